@@ -0,0 +1,86 @@
+package io.github.richardstartin.messagepack;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class CollectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CollectionState {
+
+        @Param({"8", "64", "1024"})
+        int size;
+
+        Packer packer;
+        List<String> strings;
+        List<Long> longs;
+
+        @Setup(Level.Trial)
+        public void init() {
+            packer = new Packer(buff -> {}, ByteBuffer.allocate(1 << 20));
+            strings = new ArrayList<>();
+            longs = new ArrayList<>();
+            for (int i = 0; i < size; ++i) {
+                strings.add(Strings.create(8));
+                longs.add(ThreadLocalRandom.current().nextLong());
+            }
+        }
+    }
+
+    /**
+     * Looks up the writer for every element, as the codec did before caching the element class.
+     */
+    @Benchmark
+    public void perElementLookupStrings(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.strings, CollectionBenchmark::writePerElement);
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void cachedLookupStrings(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.strings, (list, w) -> w.writeObject(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void declaredTypeStrings(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.strings, (list, w) -> w.writeCollection(list, String.class));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void perElementLookupLongs(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.longs, CollectionBenchmark::writePerElement);
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void cachedLookupLongs(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.longs, (list, w) -> w.writeObject(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void declaredTypeLongs(CollectionState state, Blackhole bh) {
+        state.packer.serialise(state.longs, (list, w) -> w.writeCollection(list, Long.class));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    private static void writePerElement(List<?> list, Writable writable) {
+        ((Packer) writable).writeArrayHeader(list.size());
+        for (Object value : list) {
+            writable.writeObject(value);
+        }
+    }
+}
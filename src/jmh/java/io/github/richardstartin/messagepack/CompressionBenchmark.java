@@ -0,0 +1,66 @@
+package io.github.richardstartin.messagepack;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+public class CompressionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CompressionState extends MessagePackingBenchmark.DataState {
+
+        @Param({"64"})
+        int bufferSizeKB;
+
+        @Param({"true", "false"})
+        boolean direct;
+
+        @Param({"0", "1", "6"})
+        int level;
+
+        Packer packer;
+        CompressingSink sink;
+        Mapper<Integer> mapper;
+        Integer[] indices;
+
+        @Setup(Level.Trial)
+        public void init() {
+            super.init();
+            int bufferSize = bufferSizeKB << 10;
+            Consumer<ByteBuffer> downstream = compressed -> {};
+            if (level == 0) {
+                packer = new Packer(downstream, allocate(bufferSize));
+            } else {
+                sink = new CompressingSink(new DeflateCompressor(level), downstream, bufferSize, direct);
+                packer = new Packer(sink, allocate(bufferSize));
+            }
+            mapper = (i, w) -> {
+                w.writeString(strings[i], EncodingCachingStrategies.none());
+                w.writeLong(longs[i]);
+            };
+            indices = new Integer[size];
+            for (int i = 0; i < size; ++i) {
+                indices[i] = i;
+            }
+        }
+
+        private ByteBuffer allocate(int size) {
+            return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        }
+    }
+
+    /**
+     * Level 0 doesn't compress at all, as a baseline.
+     */
+    @Benchmark
+    public void packAndCompress(CompressionState state, Blackhole bh) {
+        Packer packer = state.packer;
+        for (Integer i : state.indices) {
+            packer.serialise(i, state.mapper);
+        }
+        packer.flush();
+        bh.consume(state.sink);
+    }
+}
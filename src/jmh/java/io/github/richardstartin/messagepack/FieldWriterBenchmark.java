@@ -0,0 +1,99 @@
+package io.github.richardstartin.messagepack;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class FieldWriterBenchmark {
+
+    @Packable
+    public static final class Span {
+        final long traceId;
+        final long spanId;
+        final CharSequence name;
+        final double duration;
+        final int error;
+
+        Span(long traceId, long spanId, CharSequence name, double duration, int error) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.name = name;
+            this.duration = duration;
+            this.error = error;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SpanState extends MessagePackingBenchmark.DataState {
+
+        @Param({"true", "false"})
+        boolean direct;
+
+        Packer packer;
+        Span[] spans;
+        Mapper<Span> handWritten;
+        Mapper<Span> fieldWriter;
+
+        @Setup(Level.Trial)
+        public void init() {
+            super.init();
+            packer = new Packer(buff -> {}, direct ? ByteBuffer.allocateDirect(1 << 20) : ByteBuffer.allocate(1 << 20));
+            spans = new Span[size];
+            for (int i = 0; i < size; ++i) {
+                spans[i] = new Span(longs[i], longs[size - i - 1], strings[i], i * 0.5, i & 1);
+            }
+            // keys encoded up front, as the generated writers do, so only the way fields are read differs
+            byte[] traceId = "traceId".getBytes(StandardCharsets.UTF_8);
+            byte[] spanId = "spanId".getBytes(StandardCharsets.UTF_8);
+            byte[] name = "name".getBytes(StandardCharsets.UTF_8);
+            byte[] duration = "duration".getBytes(StandardCharsets.UTF_8);
+            byte[] error = "error".getBytes(StandardCharsets.UTF_8);
+            handWritten = (span, w) -> {
+                w.writeMapHeader(5);
+                w.writeUTF8(traceId, 0, traceId.length);
+                w.writeLong(span.traceId);
+                w.writeUTF8(spanId, 0, spanId.length);
+                w.writeLong(span.spanId);
+                w.writeUTF8(name, 0, name.length);
+                w.writeString(span.name);
+                w.writeUTF8(duration, 0, duration.length);
+                w.writeDouble(span.duration);
+                w.writeUTF8(error, 0, error.length);
+                w.writeInt(span.error);
+            };
+            fieldWriter = FieldWriter.mapper(Span.class);
+        }
+    }
+
+    @Benchmark
+    public void handWrittenMapper(SpanState state, Blackhole bh) {
+        Packer packer = state.packer;
+        for (Span span : state.spans) {
+            packer.serialise(span, state.handWritten);
+        }
+        packer.flush();
+        bh.consume(packer);
+    }
+
+    @Benchmark
+    public void fieldWriter(SpanState state, Blackhole bh) {
+        Packer packer = state.packer;
+        for (Span span : state.spans) {
+            packer.serialise(span, state.fieldWriter);
+        }
+        packer.flush();
+        bh.consume(packer);
+    }
+
+    @Benchmark
+    public void codec(SpanState state, Blackhole bh) {
+        Packer packer = state.packer;
+        for (Span span : state.spans) {
+            packer.serialise(span, (s, w) -> w.writeObject(s));
+        }
+        packer.flush();
+        bh.consume(packer);
+    }
+}
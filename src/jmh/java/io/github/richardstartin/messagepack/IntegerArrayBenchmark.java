@@ -0,0 +1,112 @@
+package io.github.richardstartin.messagepack;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+public class IntegerArrayBenchmark {
+
+    public enum Distribution {
+        /**
+         * fixints only
+         */
+        SMALL {
+            @Override
+            long next(SplittableRandom random) {
+                return random.nextInt(-32, 128);
+            }
+        },
+        /**
+         * every encoded size, so the scalar path can't predict its branches
+         */
+        MIXED {
+            @Override
+            long next(SplittableRandom random) {
+                return random.nextLong() >> random.nextInt(64);
+            }
+        },
+        /**
+         * the widest encoding
+         */
+        LARGE {
+            @Override
+            long next(SplittableRandom random) {
+                long value = random.nextLong();
+                return value < 0 ? Math.min(value, Long.MIN_VALUE / 2) : Math.max(value, Long.MAX_VALUE / 2);
+            }
+        };
+
+        abstract long next(SplittableRandom random);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ArrayState {
+
+        @Param({"16", "1024"})
+        int size;
+
+        @Param({"SMALL", "MIXED", "LARGE"})
+        Distribution distribution;
+
+        @Param({"true", "false"})
+        boolean direct;
+
+        Packer packer;
+        int[] ints;
+        long[] longs;
+
+        @Setup(Level.Trial)
+        public void init() {
+            packer = new Packer(buff -> {}, direct ? ByteBuffer.allocateDirect(1 << 20) : ByteBuffer.allocate(1 << 20));
+            SplittableRandom random = new SplittableRandom(0);
+            ints = new int[size];
+            longs = new long[size];
+            for (int i = 0; i < size; ++i) {
+                longs[i] = distribution.next(random);
+                ints[i] = distribution == Distribution.LARGE
+                        ? (int) (longs[i] >> 32)
+                        : (int) longs[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public void scalarInts(ArrayState state, Blackhole bh) {
+        state.packer.serialise(state.ints, (values, w) -> {
+            ((Packer) w).writeArrayHeader(values.length);
+            for (int value : values) {
+                w.writeInt(value);
+            }
+        });
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void bulkInts(ArrayState state, Blackhole bh) {
+        state.packer.serialise(state.ints, (values, w) -> w.writeInts(values));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void scalarLongs(ArrayState state, Blackhole bh) {
+        state.packer.serialise(state.longs, (values, w) -> {
+            ((Packer) w).writeArrayHeader(values.length);
+            for (long value : values) {
+                w.writeLong(value);
+            }
+        });
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void bulkLongs(ArrayState state, Blackhole bh) {
+        state.packer.serialise(state.longs, (values, w) -> w.writeLongs(values));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+}
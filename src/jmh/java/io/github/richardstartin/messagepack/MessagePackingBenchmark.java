@@ -392,6 +392,9 @@ MessagePackingBenchmark.utf8Packer:·gc.count
         @Param({"0.0", "0.1", "0.2", "1.0"})
         double cachePercentage;
 
+        @Param({"HASH_MAP", "OPEN_ADDRESSING", "PRE_ENCODED"})
+        String cacheImplementation;
+
         ByteBuffer buffer;
         Packer packer;
         Map<CharSequence, byte[]> cache;
@@ -411,10 +414,77 @@ MessagePackingBenchmark.utf8Packer:·gc.count
                             : ((StringBackedCharSequence)s).getBytes(UTF_8));
                 }
             }
-            toBytes = cache::get;
+            switch (cacheImplementation) {
+                case "OPEN_ADDRESSING":
+                    toBytes = EncodingCachingStrategies.openAddressedConstantPool(cache);
+                    break;
+                case "PRE_ENCODED":
+                    toBytes = EncodingCachingStrategies.preEncodedConstantPool(cache.keySet());
+                    break;
+                default:
+                    toBytes = cache::get;
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PooledPackerState extends DataState {
+
+        @Param({"1"})
+        int bufferSizeMB;
+
+        @Param({"true", "false"})
+        boolean direct;
+
+        BufferPool pool;
+        Packer packer;
+
+        @Setup(Level.Trial)
+        public void init() {
+            super.init();
+            pool = new BufferPool(2, bufferSizeMB << 20, direct);
+            // buffers are handed to the sink whole rather than sliced, and come straight back
+            packer = new Packer(Codec.INSTANCE, pool::release, pool);
         }
     }
 
+    @State(Scope.Benchmark)
+    public static class SmallBufferState extends DataState {
+
+        @Param({"256", "1024", "4096"})
+        int bufferSize;
+
+        Packer packer;
+        Mapper<Integer> mapper;
+        Integer[] indices;
+        int flushes;
+
+        @Setup(Level.Trial)
+        public void init() {
+            super.init();
+            // small buffers fill up every few messages, so this measures the cost of overflowing
+            packer = new Packer(buff -> ++flushes, ByteBuffer.allocate(bufferSize));
+            mapper = (i, w) -> {
+                w.writeString(strings[i], EncodingCachingStrategies.none());
+                w.writeLong(longs[i]);
+            };
+            indices = new Integer[size];
+            for (int i = 0; i < size; ++i) {
+                indices[i] = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public void serialiseIntoSmallBuffer(SmallBufferState state, Blackhole bh) {
+        Packer packer = state.packer;
+        for (Integer i : state.indices) {
+            packer.serialise(i, state.mapper);
+        }
+        packer.flush();
+        bh.consume(state.flushes);
+    }
+
 
     @Benchmark
     public void packer(PackerState state, Blackhole bh) {
@@ -429,6 +499,19 @@ MessagePackingBenchmark.utf8Packer:·gc.count
         bh.consume(state.buffer);
     }
 
+    @Benchmark
+    public void pooledPacker(PooledPackerState state, Blackhole bh) {
+        Packer packer = state.packer;
+        EncodingCache toBytes = EncodingCachingStrategies.none();
+        for (int i = 0; i < state.size; ++i) {
+            packer.writeMapHeader(1);
+            packer.writeString(state.strings[i], toBytes);
+            packer.writeLong(state.longs[i]);
+        }
+        packer.flush();
+        bh.consume(state.pool);
+    }
+
     @Benchmark
     public void utf8Packer(PackerState state, Blackhole bh) {
         Packer packer = state.packer;
@@ -0,0 +1,114 @@
+package io.github.richardstartin.messagepack;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class MessageUnpackingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class UnpackerState extends MessagePackingBenchmark.DataState {
+
+        @Param({"true", "false"})
+        boolean direct;
+
+        ByteBuffer envelope;
+        Unpacker unpacker;
+        KeyDictionary dictionary;
+
+        @Setup(Level.Trial)
+        public void init() {
+            super.init();
+            ByteBuffer buffer = direct
+                    ? ByteBuffer.allocateDirect(1 << 20)
+                    : ByteBuffer.allocate(1 << 20);
+            Packer packer = new Packer(flushed -> {
+                envelope = direct
+                        ? ByteBuffer.allocateDirect(flushed.remaining())
+                        : ByteBuffer.allocate(flushed.remaining());
+                envelope.put(flushed).flip();
+            }, buffer);
+            for (int i = 0; i < size; ++i) {
+                packer.serialise(i, (index, writable) -> {
+                    packer.writeMapHeader(1);
+                    packer.writeString(strings[index]);
+                    packer.writeLong(longs[index]);
+                });
+            }
+            packer.flush();
+            unpacker = new Unpacker();
+            dictionary = new KeyDictionary(size * 2);
+        }
+    }
+
+    @Benchmark
+    public void unpackerSkipKeys(UnpackerState state, Blackhole bh) {
+        Unpacker unpacker = state.unpacker.wrap(state.envelope.duplicate());
+        int count = unpacker.readEnvelopeHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.readMapHeader();
+            unpacker.skip();
+            bh.consume(unpacker.readLong());
+        }
+    }
+
+    @Benchmark
+    public void messageUnpackerSkipKeys(UnpackerState state, Blackhole bh) throws IOException {
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(state.envelope.duplicate());
+        int count = unpacker.unpackArrayHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.unpackMapHeader();
+            unpacker.skipValue();
+            bh.consume(unpacker.unpackLong());
+        }
+    }
+
+    @Benchmark
+    public void unpackerStrings(UnpackerState state, Blackhole bh) {
+        Unpacker unpacker = state.unpacker.wrap(state.envelope.duplicate());
+        int count = unpacker.readEnvelopeHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.readMapHeader();
+            bh.consume(unpacker.readString());
+            bh.consume(unpacker.readLong());
+        }
+    }
+
+    @Benchmark
+    public void unpackerStringViews(UnpackerState state, Blackhole bh) {
+        Unpacker unpacker = state.unpacker.wrap(state.envelope.duplicate());
+        int count = unpacker.readEnvelopeHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.readMapHeader();
+            bh.consume(unpacker.readStringView().hashCode());
+            bh.consume(unpacker.readLong());
+        }
+    }
+
+    @Benchmark
+    public void unpackerKeyDictionary(UnpackerState state, Blackhole bh) {
+        Unpacker unpacker = state.unpacker.wrap(state.envelope.duplicate());
+        KeyDictionary dictionary = state.dictionary;
+        int count = unpacker.readEnvelopeHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.readMapHeader();
+            bh.consume(unpacker.readString(dictionary));
+            bh.consume(unpacker.readLong());
+        }
+    }
+
+    @Benchmark
+    public void messageUnpackerStrings(UnpackerState state, Blackhole bh) throws IOException {
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(state.envelope.duplicate());
+        int count = unpacker.unpackArrayHeader();
+        for (int i = 0; i < count; ++i) {
+            unpacker.unpackMapHeader();
+            bh.consume(unpacker.unpackString());
+            bh.consume(unpacker.unpackLong());
+        }
+    }
+}
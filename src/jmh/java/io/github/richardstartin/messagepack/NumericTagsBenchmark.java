@@ -0,0 +1,93 @@
+package io.github.richardstartin.messagepack;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class NumericTagsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TagsState {
+
+        @Param({"8", "64"})
+        int entries;
+
+        Packer packer;
+        Map<String, Double> boxedTags;
+        DoubleValuedMap<String> tags;
+        List<Long> boxedLongs;
+        LongList longs;
+        List<Double> boxedDoubles;
+        DoubleList doubles;
+
+        @Setup(Level.Trial)
+        public void init() {
+            packer = new Packer(buff -> {}, ByteBuffer.allocate(1 << 20));
+            String[] keys = new String[entries];
+            double[] values = new double[entries];
+            long[] longValues = new long[entries];
+            boxedTags = new HashMap<>();
+            boxedLongs = new ArrayList<>();
+            boxedDoubles = new ArrayList<>();
+            for (int i = 0; i < entries; ++i) {
+                keys[i] = Strings.create(12);
+                values[i] = ThreadLocalRandom.current().nextDouble();
+                longValues[i] = ThreadLocalRandom.current().nextLong();
+                boxedTags.put(keys[i], values[i]);
+                boxedLongs.add(longValues[i]);
+                boxedDoubles.add(values[i]);
+            }
+            tags = DoubleValuedMap.wrap(keys, values);
+            longs = LongList.wrap(longValues, entries);
+            doubles = DoubleList.wrap(values, entries);
+        }
+    }
+
+    @Benchmark
+    public void boxedTagMap(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.boxedTags, (tags, w) -> w.writeMap(tags));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void doubleValuedMap(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.tags, (tags, w) -> w.writeMap(tags));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void boxedLongList(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.boxedLongs, (list, w) -> w.writeObject(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void longList(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.longs, (list, w) -> w.writeLongs(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void boxedDoubleList(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.boxedDoubles, (list, w) -> w.writeObject(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+
+    @Benchmark
+    public void doubleList(TagsState state, Blackhole bh) {
+        state.packer.serialise(state.doubles, (list, w) -> w.writeDoubles(list));
+        state.packer.flush();
+        bh.consume(state.packer);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Writes flushed buffers to a blocking sink on a background thread, so the
+ * thread packing messages never waits for I/O. Give it to a {@link Packer}
+ * as both the sink and the supplier of buffers:
+ * <pre>{@code
+ *   AsyncSink sink = new AsyncSink(socket::write, 4, 1 << 20, AsyncSink.Backpressure.DROP);
+ *   Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+ * }</pre>
+ * Supports a single packer, and must be closed to stop the background thread.
+ */
+public final class AsyncSink implements Consumer<ByteBuffer>, Supplier<ByteBuffer>, AutoCloseable {
+
+    public enum Backpressure {
+        /**
+         * Wait for the background thread to release a buffer when all of them are full.
+         */
+        BLOCK,
+        /**
+         * Discard the messages just flushed when all of the other buffers are full.
+         */
+        DROP
+    }
+
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final Consumer<ByteBuffer> blockingSink;
+    private final BufferPool pool;
+    private final Backpressure backpressure;
+    private final BlockingQueue<ByteBuffer> pending;
+    private final Thread sender;
+    private final Unpacker unpacker = new Unpacker();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong droppedBuffers = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param blockingSink called on the background thread with each flushed buffer,
+     *                     which must not be retained after it returns
+     * @param buffers the number of buffers, at least two so one can be filled while another is written
+     */
+    public AsyncSink(Consumer<ByteBuffer> blockingSink, int buffers, int bufferSize, Backpressure backpressure) {
+        if (buffers < 2) {
+            throw new IllegalArgumentException("at least two buffers are required but got " + buffers);
+        }
+        this.blockingSink = blockingSink;
+        this.pool = new BufferPool(buffers, bufferSize);
+        this.backpressure = backpressure;
+        this.pending = new LinkedBlockingQueue<>();
+        this.sender = new Thread(this::send, "messagepack-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public ByteBuffer get() {
+        return pool.acquire();
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        // only the sender releases buffers, so once one is free it stays free for get()
+        if (backpressure == Backpressure.DROP && pool.available() == 0) {
+            droppedBuffers.incrementAndGet();
+            droppedMessages.addAndGet(unpacker.wrap(buffer.duplicate()).readEnvelopeHeader());
+            pool.release(buffer);
+        } else {
+            pending.add(buffer);
+        }
+    }
+
+    /**
+     * Waits for the buffers already flushed to be written, then stops the background thread.
+     * If interrupted it stops waiting and restores the interrupt, and the background
+     * thread still stops once it has written them.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            pending.add(CLOSE);
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of buffers written by the blocking sink
+     */
+    public long sent() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of buffers the blocking sink threw an exception for
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of times the packer had to wait for a buffer
+     */
+    public long blocked() {
+        return pool.exhausted();
+    }
+
+    public long droppedBuffers() {
+        return droppedBuffers.get();
+    }
+
+    public long droppedMessages() {
+        return droppedMessages.get();
+    }
+
+    private void send() {
+        try {
+            for (ByteBuffer buffer = pending.take(); buffer != CLOSE; buffer = pending.take()) {
+                try {
+                    blockingSink.accept(buffer);
+                    sent.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    pool.release(buffer);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A fixed number of equally sized buffers, allocated up front, which are
+ * passed between a {@link Packer} filling them and a sink writing them.
+ * A packer given a pool hands each flushed buffer to the sink without
+ * slicing or copying it, and the sink must release it once written:
+ * <pre>{@code
+ *   BufferPool pool = new BufferPool(4, 1 << 20, true);
+ *   Packer packer = new Packer(Codec.INSTANCE, buffer -> { write(buffer); pool.release(buffer); }, pool);
+ * }</pre>
+ * Safe to share between threads.
+ */
+public final class BufferPool implements Supplier<ByteBuffer> {
+
+    private static final int FREE = 0;
+    private static final int IN_USE = 1;
+
+    private final BlockingQueue<ByteBuffer> free;
+    // never modified after construction
+    private final Map<ByteBuffer, Integer> indexes;
+    private final AtomicIntegerArray states;
+    private final int bufferSize;
+    private final boolean direct;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder foreign = new LongAdder();
+
+    public BufferPool(int buffers, int bufferSize, boolean direct) {
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.indexes = new IdentityHashMap<>(buffers);
+        this.states = new AtomicIntegerArray(buffers);
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        for (int i = 0; i < buffers; ++i) {
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            indexes.put(buffer, i);
+            free.offer(buffer);
+        }
+    }
+
+    public BufferPool(int buffers, int bufferSize) {
+        this(buffers, bufferSize, false);
+    }
+
+    /**
+     * Same as {@link #acquire()}.
+     */
+    @Override
+    public ByteBuffer get() {
+        return acquire();
+    }
+
+    /**
+     * Waits until a buffer is released if none are free.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (null == buffer) {
+            exhausted.increment();
+            try {
+                buffer = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for a buffer", e);
+            }
+        }
+        return take(buffer);
+    }
+
+    /**
+     * @return a free buffer, or null if they are all in use
+     */
+    public ByteBuffer tryAcquire() {
+        ByteBuffer buffer = free.poll();
+        if (null == buffer) {
+            exhausted.increment();
+            return null;
+        }
+        return take(buffer);
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers which don't belong to the pool, such as
+     * those a packer temporarily grows into for oversized messages, are ignored.
+     *
+     * @throws IllegalStateException if the buffer has already been released
+     */
+    public void release(ByteBuffer buffer) {
+        Integer index = indexes.get(buffer);
+        if (null == index) {
+            foreign.increment();
+            return;
+        }
+        if (!states.compareAndSet(index, IN_USE, FREE)) {
+            throw new IllegalStateException("buffer " + index + " was released twice");
+        }
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    public int available() {
+        return free.size();
+    }
+
+    public int buffers() {
+        return states.length();
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return the number of buffers handed out
+     */
+    public long acquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return the number of times a buffer was wanted while they were all in use
+     */
+    public long exhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * @return the number of buffers released which didn't belong to the pool
+     */
+    public long foreign() {
+        return foreign.sum();
+    }
+
+    private ByteBuffer take(ByteBuffer buffer) {
+        states.set(indexes.get(buffer), IN_USE);
+        acquired.increment();
+        return buffer;
+    }
+}
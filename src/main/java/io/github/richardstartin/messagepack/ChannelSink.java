@@ -0,0 +1,108 @@
+package io.github.richardstartin.messagepack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Writes flushed envelopes to a blocking channel, such as a {@code FileChannel}
+ * or a {@code SocketChannel}, looping until partial writes complete.
+ * <p>
+ * Given the {@link BufferPool} a {@link Packer} takes its buffers from, up to
+ * {@code maxBatch} envelopes are held back and written together with a single
+ * gathering write, then released to the pool. Envelopes are never held back
+ * while the pool has no free buffers, so the packer doesn't wait for itself.
+ * Without a pool each envelope is written before {@link #accept(ByteBuffer)} returns.
+ * Not thread-safe, except as the sink of a {@link PackingPipeline}.
+ */
+public final class ChannelSink implements Consumer<ByteBuffer>, PackingPipeline.GatheringSink {
+
+    private final WritableByteChannel channel;
+    private final BufferPool pool;
+    private final ByteBuffer[] batch;
+    private int batched;
+    private long writes;
+    private long bytes;
+
+    public ChannelSink(WritableByteChannel channel, BufferPool pool, int maxBatch) {
+        this.channel = channel;
+        this.pool = pool;
+        this.batch = new ByteBuffer[null == pool ? 1 : maxBatch];
+    }
+
+    public ChannelSink(WritableByteChannel channel) {
+        this(channel, null, 1);
+    }
+
+    @Override
+    public void accept(ByteBuffer envelope) {
+        batch[batched++] = envelope;
+        if (batched == batch.length || null == pool || pool.available() == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes any envelopes held back for batching. They're released to the pool
+     * even if the write fails, which is safe because the packer never writes to
+     * a buffer again once it has been handed over.
+     */
+    public void flush() {
+        if (batched > 0) {
+            try {
+                write(batch, batched);
+            } finally {
+                for (int i = 0; i < batched; ++i) {
+                    if (null != pool) {
+                        pool.release(batch[i]);
+                    }
+                    batch[i] = null;
+                }
+                batched = 0;
+            }
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer[] buffers, int length) {
+        try {
+            if (channel instanceof GatheringByteChannel) {
+                GatheringByteChannel gathering = (GatheringByteChannel) channel;
+                int offset = 0;
+                while (offset < length) {
+                    bytes += gathering.write(buffers, offset, length - offset);
+                    ++writes;
+                    while (offset < length && !buffers[offset].hasRemaining()) {
+                        ++offset;
+                    }
+                }
+            } else {
+                for (int i = 0; i < length; ++i) {
+                    while (buffers[i].hasRemaining()) {
+                        bytes += channel.write(buffers[i]);
+                        ++writes;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of calls made to the channel
+     */
+    public long writes() {
+        return writes;
+    }
+
+    /**
+     * @return the number of bytes written to the channel
+     */
+    public long bytes() {
+        return bytes;
+    }
+}
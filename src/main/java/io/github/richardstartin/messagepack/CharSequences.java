@@ -0,0 +1,51 @@
+package io.github.richardstartin.messagepack;
+
+final class CharSequences {
+
+    /**
+     * @return the same hash code as {@link String#hashCode()} for the same content
+     */
+    static int hash(CharSequence s) {
+        if (s instanceof String || s instanceof UTF8View) {
+            return s.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+    static boolean contentEquals(String key, CharSequence s) {
+        if (s instanceof String) {
+            return key.equals(s);
+        }
+        int length = key.length();
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (key.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the content, {@link CharSequence#toString()} isn't always implemented.
+     */
+    static String copyOf(CharSequence s) {
+        if (s instanceof String) {
+            return (String) s;
+        }
+        return new StringBuilder(s.length()).append(s).toString();
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private CharSequences() {
+    }
+}
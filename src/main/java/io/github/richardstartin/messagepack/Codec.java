@@ -3,8 +3,9 @@ package io.github.richardstartin.messagepack;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.ServiceLoader;
 
 public final class Codec extends ClassValue<Writer<?>> {
 
@@ -12,12 +13,21 @@ public final class Codec extends ClassValue<Writer<?>> {
 
     private final Map<Class<?>, Writer<?>> config;
 
+    /**
+     * @param config writers to use for specific classes, which take precedence
+     *               over any generated at compile time
+     */
     public Codec(Map<Class<?>, Writer<?>> config) {
-        this.config = config;
+        Map<Class<?>, Writer<?>> writers = new HashMap<>();
+        for (GeneratedWriter<?> writer : ServiceLoader.load(GeneratedWriter.class, Codec.class.getClassLoader())) {
+            writers.put(writer.type(), writer);
+        }
+        writers.putAll(config);
+        this.config = writers;
     }
 
     public Codec() {
-        this(Collections.emptyMap());
+        this(new HashMap<>());
     }
 
     @Override
@@ -49,6 +59,16 @@ public final class Codec extends ClassValue<Writer<?>> {
         if (CharSequence.class.isAssignableFrom(clazz)) {
             return CharSequenceWriter.INSTANCE;
         }
+        // checked first in case an implementation is also a boxed collection
+        if (LongList.class.isAssignableFrom(clazz)) {
+            return new LongListWriter();
+        }
+        if (DoubleList.class.isAssignableFrom(clazz)) {
+            return new DoubleListWriter();
+        }
+        if (DoubleValuedMap.class.isAssignableFrom(clazz)) {
+            return new DoubleValuedMapWriter();
+        }
         if (Map.class.isAssignableFrom(clazz)) {
             return new MapWriter();
         }
@@ -58,6 +78,9 @@ public final class Codec extends ClassValue<Writer<?>> {
         if (ByteBuffer.class.isAssignableFrom(clazz)) {
             return new ByteBufferWriter();
         }
+        if (PackedFragment.class == clazz) {
+            return new PackedFragmentWriter();
+        }
         if (clazz.isArray()) {
             if (byte[].class == clazz) {
                 return new ByteArrayWriter();
@@ -85,6 +108,9 @@ public final class Codec extends ClassValue<Writer<?>> {
             }
             return new ObjectArrayWriter();
         }
+        if (clazz.isAnnotationPresent(Packable.class)) {
+            return FieldWriter.of(clazz);
+        }
         return DefaultWriter.INSTANCE;
     }
 
@@ -92,10 +118,7 @@ public final class Codec extends ClassValue<Writer<?>> {
 
         @Override
         public void write(int[] value, Packer packer, EncodingCache encodingCache) {
-            packer.writeArrayHeader(value.length);
-            for (int i : value) {
-                packer.writeInt(i);
-            }
+            packer.writeInts(value);
         }
     }
 
@@ -165,10 +188,7 @@ public final class Codec extends ClassValue<Writer<?>> {
 
         @Override
         public void write(long[] value, Packer packer, EncodingCache encodingCache) {
-            packer.writeArrayHeader(value.length);
-            for (long i : value) {
-                packer.writeLong(i);
-            }
+            packer.writeLongs(value);
         }
     }
 
@@ -176,10 +196,7 @@ public final class Codec extends ClassValue<Writer<?>> {
 
         @Override
         public void write(Collection<?> collection, Packer packer, EncodingCache encodingCache) {
-            packer.writeArrayHeader(collection.size());
-            for (Object value : collection) {
-                packer.writeObject(value, encodingCache);
-            }
+            packer.writeElements(collection, encodingCache);
         }
     }
 
@@ -187,10 +204,31 @@ public final class Codec extends ClassValue<Writer<?>> {
 
         @Override
         public void write(Object[] array, Packer packer, EncodingCache encodingCache) {
-            packer.writeArrayHeader(array.length);
-            for (Object value : array) {
-                packer.writeObject(value, encodingCache);
-            }
+            packer.writeElements(array, encodingCache);
+        }
+    }
+
+    private static final class LongListWriter implements Writer<LongList> {
+
+        @Override
+        public void write(LongList value, Packer packer, EncodingCache encodingCache) {
+            packer.writeLongs(value);
+        }
+    }
+
+    private static final class DoubleListWriter implements Writer<DoubleList> {
+
+        @Override
+        public void write(DoubleList value, Packer packer, EncodingCache encodingCache) {
+            packer.writeDoubles(value);
+        }
+    }
+
+    private static final class DoubleValuedMapWriter implements Writer<DoubleValuedMap<? extends CharSequence>> {
+
+        @Override
+        public void write(DoubleValuedMap<? extends CharSequence> value, Packer packer, EncodingCache encodingCache) {
+            packer.writeMap(value, encodingCache);
         }
     }
 
@@ -268,6 +306,21 @@ public final class Codec extends ClassValue<Writer<?>> {
         }
     }
 
+    private static final class PackedFragmentWriter implements Writer<PackedFragment> {
+
+        @Override
+        public void write(PackedFragment value, Packer packer, EncodingCache encodingCache) {
+            packer.writeRaw(value);
+        }
+    }
+
+    /**
+     * @return true if the writer only writes {@code String.valueOf(value)}
+     */
+    static boolean isFallback(Writer<?> writer) {
+        return writer == DefaultWriter.INSTANCE;
+    }
+
     private static final class DefaultWriter implements Writer<Object> {
 
         public static final DefaultWriter INSTANCE = new DefaultWriter();
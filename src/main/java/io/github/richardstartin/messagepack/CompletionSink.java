@@ -0,0 +1,81 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Hands flushed buffers to an asynchronous writer and recycles each buffer
+ * when its write completes, so a {@link Packer} carries on in a free buffer
+ * while earlier ones are in flight and never blocks on I/O itself:
+ * <pre>{@code
+ *   CompletionSink sink = new CompletionSink(buffer -> channel.write(buffer), new BufferPool(4, 1 << 20));
+ *   Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+ * }</pre>
+ * Nothing here holds a monitor, so when every buffer is in flight a virtual
+ * thread waiting for one unmounts rather than pinning its carrier thread.
+ * Safe to share between threads if the pool is, with one packer per thread.
+ */
+public final class CompletionSink implements Consumer<ByteBuffer>, Supplier<ByteBuffer> {
+
+    private final Function<ByteBuffer, ? extends CompletionStage<?>> writer;
+    private final BufferPool pool;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param writer starts writing the buffer, and must not touch it once the stage completes
+     */
+    public CompletionSink(Function<ByteBuffer, ? extends CompletionStage<?>> writer, BufferPool pool) {
+        this.writer = writer;
+        this.pool = pool;
+    }
+
+    @Override
+    public ByteBuffer get() {
+        return pool.acquire();
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+        inFlight.incrementAndGet();
+        CompletionStage<?> write;
+        try {
+            write = writer.apply(buffer);
+        } catch (RuntimeException e) {
+            complete(buffer, e);
+            throw e;
+        }
+        write.whenComplete((ignored, error) -> complete(buffer, error));
+    }
+
+    /**
+     * @return the number of buffers being written
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long completed() {
+        return completed.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    private void complete(ByteBuffer buffer, Throwable error) {
+        if (null == error) {
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+        pool.release(buffer);
+        inFlight.decrementAndGet();
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Compresses each flushed envelope into an output buffer, which is reused,
+ * before passing it on to another sink:
+ * <pre>{@code
+ *   CompressingSink sink = new CompressingSink(new DeflateCompressor(), b -> send(b), BUFFER_SIZE, true);
+ *   Packer packer = new Packer(sink, ByteBuffer.allocate(BUFFER_SIZE));
+ * }</pre>
+ * The compressed buffer is only valid until the next sink returns.
+ * Not thread-safe (use one per packer).
+ */
+public final class CompressingSink implements Consumer<ByteBuffer> {
+
+    private final Compressor compressor;
+    private final Consumer<ByteBuffer> sink;
+    private final boolean direct;
+    private ByteBuffer output;
+
+    private long flushes;
+    private long bytesIn;
+    private long bytesOut;
+    private long nanos;
+
+    /**
+     * @param maxEnvelopeSize the size of the packer's buffer, larger envelopes need the output buffer to be reallocated
+     * @param direct whether to compress into a direct buffer
+     */
+    public CompressingSink(Compressor compressor, Consumer<ByteBuffer> sink, int maxEnvelopeSize, boolean direct) {
+        this.compressor = compressor;
+        this.sink = sink;
+        this.direct = direct;
+        this.output = allocate(compressor.maxCompressedLength(maxEnvelopeSize));
+    }
+
+    @Override
+    public void accept(ByteBuffer envelope) {
+        int length = envelope.remaining();
+        int required = compressor.maxCompressedLength(length);
+        if (output.capacity() < required) {
+            output = allocate(required);
+        }
+        output.clear();
+        long start = System.nanoTime();
+        int compressed = compressor.compress(envelope, output);
+        nanos += System.nanoTime() - start;
+        ++flushes;
+        bytesIn += length;
+        bytesOut += compressed;
+        output.flip();
+        sink.accept(output);
+    }
+
+    public long flushes() {
+        return flushes;
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return the uncompressed size divided by the compressed size
+     */
+    public double compressionRatio() {
+        return bytesOut == 0 ? 0D : (double) bytesIn / bytesOut;
+    }
+
+    /**
+     * @return the average time spent compressing each envelope
+     */
+    public double nanosPerFlush() {
+        return flushes == 0 ? 0D : (double) nanos / flushes;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+}
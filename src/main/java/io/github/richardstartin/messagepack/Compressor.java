@@ -0,0 +1,22 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses flushed envelopes for a {@link CompressingSink}.
+ * Implementations can keep state between calls, so aren't thread-safe.
+ */
+public interface Compressor {
+
+    /**
+     * Compresses the remaining bytes of the input into the output, advancing both.
+     *
+     * @return the number of compressed bytes written
+     */
+    int compress(ByteBuffer input, ByteBuffer output);
+
+    /**
+     * @return the most bytes compressing {@code length} bytes can produce
+     */
+    int maxCompressedLength(int length);
+}
@@ -0,0 +1,138 @@
+package io.github.richardstartin.messagepack;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded encoding cache which can be shared by packers on different
+ * threads. Entries live in a fixed number of two-way sets, lookups which
+ * hit are lock-free and allocation-free, and a miss replaces whichever way
+ * has not been referenced since it was last considered for eviction (CLOCK).
+ */
+public final class ConcurrentEncodingCache implements EncodingCache {
+
+    private static final class Entry {
+        final String key;
+        final int hash;
+        final byte[] utf8;
+        // racy, only ever a hint for eviction
+        boolean referenced;
+
+        Entry(String key, int hash, byte[] utf8) {
+            this.key = key;
+            this.hash = hash;
+            this.utf8 = utf8;
+        }
+    }
+
+    private final Function<CharSequence, byte[]> encoder;
+    private final boolean includesHeader;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of entries, rounded up to a power of two
+     * @param encoder computes the encoding on a miss, may return null for values which shouldn't be cached
+     * @param includesHeader whether the encoder includes the messagepack string header
+     */
+    public ConcurrentEncodingCache(int capacity, Function<CharSequence, byte[]> encoder, boolean includesHeader) {
+        int sets = Math.max(1, Integer.highestOneBit(Math.max(capacity - 1, 1)));
+        this.encoder = encoder;
+        this.includesHeader = includesHeader;
+        this.entries = new AtomicReferenceArray<>(sets * 2);
+        this.mask = sets - 1;
+    }
+
+    public ConcurrentEncodingCache(int capacity, Function<CharSequence, byte[]> encoder) {
+        this(capacity, encoder, false);
+    }
+
+    @Override
+    public byte[] encode(CharSequence s) {
+        int hash = CharSequences.hash(s);
+        int set = (CharSequences.spread(hash) & mask) << 1;
+        Entry first = entries.get(set);
+        if (null != first && first.hash == hash && CharSequences.contentEquals(first.key, s)) {
+            return hit(first);
+        }
+        Entry second = entries.get(set + 1);
+        if (null != second && second.hash == hash && CharSequences.contentEquals(second.key, s)) {
+            return hit(second);
+        }
+        misses.increment();
+        byte[] utf8 = encoder.apply(s);
+        if (null != utf8) {
+            Entry entry = new Entry(CharSequences.copyOf(s), hash, utf8);
+            Entry evicted = entries.getAndSet(victim(set, first, second), entry);
+            if (null == evicted) {
+                size.incrementAndGet();
+            } else {
+                evictions.increment();
+            }
+        }
+        return utf8;
+    }
+
+    @Override
+    public boolean includesHeader() {
+        return includesHeader;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return entries.length();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hits = hits();
+        long lookups = hits + misses();
+        return lookups == 0 ? 0D : (double) hits / lookups;
+    }
+
+    private byte[] hit(Entry entry) {
+        hits.increment();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.utf8;
+    }
+
+    private static int victim(int set, Entry first, Entry second) {
+        if (null == first) {
+            return set;
+        }
+        if (null == second) {
+            return set + 1;
+        }
+        if (!first.referenced) {
+            return set;
+        }
+        first.referenced = false;
+        if (!second.referenced) {
+            return set + 1;
+        }
+        second.referenced = false;
+        return set;
+    }
+}
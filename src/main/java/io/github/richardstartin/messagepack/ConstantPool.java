@@ -0,0 +1,107 @@
+package io.github.richardstartin.messagepack;
+
+import java.util.Map;
+
+/**
+ * An open addressed table of encodings keyed by {@link CharSequence} content,
+ * so {@code String}, {@code StringBuilder} and any other implementation with
+ * the same characters find the same entry. Keys, hashes and encodings are held
+ * in flat arrays, and lookups don't box, iterate or allocate.
+ * Safe to share between threads once populated.
+ */
+public final class ConstantPool implements EncodingCache {
+
+    private final boolean includesHeader;
+
+    private String[] keys;
+    private int[] hashes;
+    private byte[][] values;
+    private int mask;
+    private int size;
+
+    /**
+     * @param includesHeader whether the encodings will start with the messagepack string header
+     */
+    public ConstantPool(int expectedSize, boolean includesHeader) {
+        this.includesHeader = includesHeader;
+        allocate(Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1);
+    }
+
+    public ConstantPool(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public ConstantPool(Map<? extends CharSequence, byte[]> constants) {
+        this(constants.size());
+        for (Map.Entry<? extends CharSequence, byte[]> constant : constants.entrySet()) {
+            put(constant.getKey(), constant.getValue());
+        }
+    }
+
+    @Override
+    public byte[] encode(CharSequence s) {
+        int hash = CharSequences.hash(s);
+        for (int slot = CharSequences.spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (null == key) {
+                return null;
+            }
+            if (hashes[slot] == hash && CharSequences.contentEquals(key, s)) {
+                return values[slot];
+            }
+        }
+    }
+
+    @Override
+    public boolean includesHeader() {
+        return includesHeader;
+    }
+
+    public void put(CharSequence s, byte[] encoding) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        if (insert(CharSequences.copyOf(s), CharSequences.hash(s), encoding)) {
+            ++size;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean insert(String s, int hash, byte[] encoding) {
+        for (int slot = CharSequences.spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (null == key) {
+                keys[slot] = s;
+                hashes[slot] = hash;
+                values[slot] = encoding;
+                return true;
+            }
+            if (hashes[slot] == hash && key.equals(s)) {
+                values[slot] = encoding;
+                return false;
+            }
+        }
+    }
+
+    private void resize() {
+        String[] keys = this.keys;
+        int[] hashes = this.hashes;
+        byte[][] values = this.values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < keys.length; ++i) {
+            if (null != keys[i]) {
+                insert(keys[i], hashes[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.values = new byte[capacity][];
+        this.mask = capacity - 1;
+    }
+}
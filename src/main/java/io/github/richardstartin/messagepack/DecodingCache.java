@@ -0,0 +1,13 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+
+@FunctionalInterface
+public interface DecodingCache {
+
+    /**
+     * @return the string encoded as UTF-8 in the given range of the buffer, never null
+     */
+    String decode(ByteBuffer buffer, int offset, int length);
+
+}
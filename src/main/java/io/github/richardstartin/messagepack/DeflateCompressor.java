@@ -0,0 +1,59 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses each envelope as a complete deflate stream, reusing one
+ * {@link Deflater} so there is no allocation per envelope. Works directly
+ * on heap or direct buffers.
+ */
+public final class DeflateCompressor implements Compressor {
+
+    private final Deflater deflater;
+
+    /**
+     * @param level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @param nowrap whether to leave out the zlib header and checksum, see {@link Deflater#Deflater(int, boolean)}
+     */
+    public DeflateCompressor(int level, boolean nowrap) {
+        this.deflater = new Deflater(level, nowrap);
+    }
+
+    public DeflateCompressor(int level) {
+        this(level, false);
+    }
+
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    @Override
+    public int compress(ByteBuffer input, ByteBuffer output) {
+        int start = output.position();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (!output.hasRemaining()) {
+                throw new BufferOverflowException();
+            }
+            deflater.deflate(output);
+        }
+        return output.position() - start;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // zlib's deflateBound, plus room for the zlib wrapper
+        return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13 + 6;
+    }
+
+    /**
+     * Frees the deflater's native memory.
+     */
+    public void end() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+
+public interface Deserialiser {
+    /**
+     * Calls the unmapper once per message in an envelope written by {@link Serialiser#flush()}.
+     * The unmapper must consume exactly the values its {@link Mapper} wrote.
+     * @return the number of messages read
+     */
+    <T> int deserialise(ByteBuffer envelope, T target, Unmapper<T> unmapper);
+}
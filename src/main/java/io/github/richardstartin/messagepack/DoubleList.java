@@ -0,0 +1,33 @@
+package io.github.richardstartin.messagepack;
+
+/**
+ * A list of doubles which can be written without boxing, for adapting a
+ * primitive collection, such as fastutil's {@code DoubleList}, to
+ * {@link Writable#writeDoubles(DoubleList)}.
+ */
+public interface DoubleList {
+
+    int size();
+
+    double getDouble(int index);
+
+    /**
+     * @return a view of the first {@code length} values of the array
+     */
+    static DoubleList wrap(double[] values, int length) {
+        if (length < 0 || length > values.length) {
+            throw new IllegalArgumentException("length " + length + " out of range for " + values.length + " values");
+        }
+        return new DoubleList() {
+            @Override
+            public int size() {
+                return length;
+            }
+
+            @Override
+            public double getDouble(int index) {
+                return values[index];
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.richardstartin.messagepack;
+
+/**
+ * A map of names to doubles, such as metric tags with numeric values, which
+ * can be written without boxing by {@link Writable#writeMap(DoubleValuedMap, EncodingCache)}.
+ * Entries are accessed by index so writing one doesn't allocate an iterator
+ * or an entry, which suits maps backed by parallel key and value arrays.
+ */
+public interface DoubleValuedMap<K extends CharSequence> {
+
+    int size();
+
+    K keyAt(int index);
+
+    double valueAt(int index);
+
+    /**
+     * @return a view of the parallel arrays, which must be the same length
+     */
+    static <K extends CharSequence> DoubleValuedMap<K> wrap(K[] keys, double[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException(keys.length + " keys but " + values.length + " values");
+        }
+        return new DoubleValuedMap<K>() {
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public K keyAt(int index) {
+                return keys[index];
+            }
+
+            @Override
+            public double valueAt(int index) {
+                return values[index];
+            }
+        };
+    }
+}
@@ -5,4 +5,12 @@ public interface EncodingCache {
 
     byte[] encode(CharSequence s);
 
+    /**
+     * @return true if the encodings start with the messagepack string header,
+     * so a hit can be copied into the output in one go
+     */
+    default boolean includesHeader() {
+        return false;
+    }
+
 }
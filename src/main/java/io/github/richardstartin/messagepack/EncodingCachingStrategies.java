@@ -1,5 +1,8 @@
 package io.github.richardstartin.messagepack;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -16,8 +19,46 @@ public class EncodingCachingStrategies {
         return constants::get;
     }
 
+    public static ConstantPool openAddressedConstantPool(Map<? extends CharSequence, byte[]> constants) {
+        return new ConstantPool(constants);
+    }
+
+    public static ConstantPool preEncodedConstantPool(Collection<? extends CharSequence> constants) {
+        ConstantPool pool = new ConstantPool(constants.size(), true);
+        for (CharSequence constant : constants) {
+            pool.put(constant, preEncode(constant));
+        }
+        return pool;
+    }
+
+    /**
+     * Unbounded and not thread-safe, prefer {@link #concurrent(int, Function)}
+     * for values with high or unknown cardinality.
+     */
     public static EncodingCache memoise(Function<CharSequence, byte[]> fn) {
         Map<CharSequence, byte[]> map = new HashMap<>();
         return s -> map.computeIfAbsent(s, fn);
     }
+
+    public static ConcurrentEncodingCache concurrent(int capacity, Function<CharSequence, byte[]> fn) {
+        return new ConcurrentEncodingCache(capacity, fn);
+    }
+
+    public static ConcurrentEncodingCache concurrentPreEncoded(int capacity) {
+        return new ConcurrentEncodingCache(capacity, EncodingCachingStrategies::preEncode, true);
+    }
+
+    /**
+     * @return the complete messagepack encoding of the string, header included
+     */
+    public static byte[] preEncode(CharSequence s) {
+        byte[] utf8 = CharSequences.copyOf(s).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = ByteBuffer.allocate(utf8.length + 5);
+        Packer.writeStringHeader(encoded, utf8.length);
+        encoded.put(utf8);
+        byte[] result = new byte[encoded.position()];
+        encoded.flip();
+        encoded.get(result);
+        return result;
+    }
 }
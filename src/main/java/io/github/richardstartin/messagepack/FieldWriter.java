@@ -0,0 +1,253 @@
+package io.github.richardstartin.messagepack;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an object as a map of its field names to its field values. The class
+ * is inspected once, when the writer is created: field names are packed up
+ * front so each key is a single copy, and each field is read through a
+ * {@link MethodHandle} typed to the field, so primitives aren't boxed.
+ * {@link Codec} creates one per {@link Packable} class, and it can be used as
+ * a mapper too, so hand written mappers aren't needed:
+ * <pre>{@code
+ *   Mapper<Metric> mapper = FieldWriter.mapper(Metric.class);
+ *   serialiser.serialise(metric, mapper);
+ * }</pre>
+ * Fields are written in declaration order, superclass fields first, and a
+ * superclass field hidden by a subclass field of the same name is left out,
+ * so each key is written once.
+ */
+public final class FieldWriter<T> implements Writer<T>, Mapper<T> {
+
+    private final FieldHandler[] fields;
+
+    private FieldWriter(FieldHandler[] fields) {
+        this.fields = fields;
+    }
+
+    public static <T> FieldWriter<T> of(Class<T> type) {
+        List<Field> declared = new ArrayList<>();
+        collectFields(type, declared);
+        FieldHandler[] fields = new FieldHandler[declared.size()];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < fields.length; ++i) {
+            Field field = declared.get(i);
+            field.setAccessible(true);
+            PackedFragment key = PackedFragment.pack(field.getName(), (name, w) -> w.writeString(name));
+            try {
+                fields[i] = handler(field.getType(), key, lookup.unreflectGetter(field));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("can't read " + field, e);
+            }
+        }
+        return new FieldWriter<>(fields);
+    }
+
+    /**
+     * @return the writer the default codec has for the type if it's
+     * {@link Packable}, which may have been generated at compile time,
+     * otherwise a new one
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Mapper<T> mapper(Class<T> type) {
+        Writer<?> writer = Codec.INSTANCE.get(type);
+        return writer instanceof Mapper ? (Mapper<T>) writer : of(type);
+    }
+
+    @Override
+    public void write(T value, Packer packer, EncodingCache encodingCache) {
+        writeFields(value, packer, encodingCache);
+    }
+
+    @Override
+    public void map(T data, Writable packer) {
+        writeFields(data, packer, EncodingCachingStrategies.none());
+    }
+
+    private void writeFields(T value, Writable writable, EncodingCache encodingCache) {
+        writable.writeMapHeader(fields.length);
+        for (FieldHandler field : fields) {
+            writable.writeRaw(field.key);
+            field.write(value, writable, encodingCache);
+        }
+    }
+
+    private static void collectFields(Class<?> type, List<Field> fields) {
+        if (null == type || Object.class == type) {
+            return;
+        }
+        collectFields(type.getSuperclass(), fields);
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                fields.removeIf(hidden -> hidden.getName().equals(field.getName()));
+                fields.add(field);
+            }
+        }
+    }
+
+    private static FieldHandler handler(Class<?> type, PackedFragment key, MethodHandle getter) {
+        MethodHandle exact = getter.asType(MethodType.methodType(type.isPrimitive() ? type : Object.class, Object.class));
+        if (int.class == type) {
+            return new IntField(key, exact);
+        }
+        if (long.class == type) {
+            return new LongField(key, exact);
+        }
+        if (double.class == type) {
+            return new DoubleField(key, exact);
+        }
+        if (float.class == type) {
+            return new FloatField(key, exact);
+        }
+        if (boolean.class == type) {
+            return new BooleanField(key, exact);
+        }
+        if (type.isPrimitive()) {
+            // short, byte and char are written as ints
+            return new IntField(key, exact.asType(MethodType.methodType(int.class, Object.class)));
+        }
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return new StringField(key, exact);
+        }
+        return new ObjectField(key, exact);
+    }
+
+    private abstract static class FieldHandler {
+        final PackedFragment key;
+        final MethodHandle getter;
+
+        FieldHandler(PackedFragment key, MethodHandle getter) {
+            this.key = key;
+            this.getter = getter;
+        }
+
+        abstract void write(Object value, Writable packer, EncodingCache encodingCache);
+
+        static IllegalStateException failure(Throwable t) {
+            return new IllegalStateException("failed to read field", t);
+        }
+    }
+
+    private static final class IntField extends FieldHandler {
+
+        IntField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            try {
+                packer.writeInt((int) getter.invokeExact(value));
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        }
+    }
+
+    private static final class LongField extends FieldHandler {
+
+        LongField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            try {
+                packer.writeLong((long) getter.invokeExact(value));
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        }
+    }
+
+    private static final class DoubleField extends FieldHandler {
+
+        DoubleField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            try {
+                packer.writeDouble((double) getter.invokeExact(value));
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        }
+    }
+
+    private static final class FloatField extends FieldHandler {
+
+        FloatField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            try {
+                packer.writeFloat((float) getter.invokeExact(value));
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        }
+    }
+
+    private static final class BooleanField extends FieldHandler {
+
+        BooleanField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            try {
+                packer.writeBoolean((boolean) getter.invokeExact(value));
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+        }
+    }
+
+    private static final class StringField extends FieldHandler {
+
+        StringField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            Object field;
+            try {
+                field = (Object) getter.invokeExact(value);
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+            packer.writeString((CharSequence) field, encodingCache);
+        }
+    }
+
+    private static final class ObjectField extends FieldHandler {
+
+        ObjectField(PackedFragment key, MethodHandle getter) {
+            super(key, getter);
+        }
+
+        @Override
+        void write(Object value, Writable packer, EncodingCache encodingCache) {
+            Object field;
+            try {
+                field = (Object) getter.invokeExact(value);
+            } catch (Throwable t) {
+                throw failure(t);
+            }
+            packer.writeObject(field, encodingCache);
+        }
+    }
+}
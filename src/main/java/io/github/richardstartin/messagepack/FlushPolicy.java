@@ -0,0 +1,62 @@
+package io.github.richardstartin.messagepack;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a {@link Packer} flushes by itself, after the message which
+ * reaches a message count, a number of bytes, or a maximum age of the oldest
+ * message in the buffer. Only the age needs the clock, which is read once per
+ * message, and only when a maximum age is set:
+ * <pre>{@code
+ *   packer.setFlushPolicy(FlushPolicy.onOverflow().maxMessages(1000).maxAge(100, TimeUnit.MILLISECONDS));
+ * }</pre>
+ * The age is only checked when a message is serialised, so a packer which goes
+ * quiet should also be flushed by a timer, see {@link Packer#requestFlush()}.
+ * Immutable.
+ */
+public final class FlushPolicy {
+
+    private static final FlushPolicy ON_OVERFLOW = new FlushPolicy(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long maxAgeNanos;
+
+    private FlushPolicy(int maxMessages, int maxBytes, long maxAgeNanos) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAgeNanos;
+    }
+
+    /**
+     * Only flush when the buffer is full, which is the default.
+     */
+    public static FlushPolicy onOverflow() {
+        return ON_OVERFLOW;
+    }
+
+    public FlushPolicy maxMessages(int maxMessages) {
+        return new FlushPolicy(maxMessages, maxBytes, maxAgeNanos);
+    }
+
+    /**
+     * @param maxBytes the size of the messages in the buffer, not including the envelope header
+     */
+    public FlushPolicy maxBytes(int maxBytes) {
+        return new FlushPolicy(maxMessages, maxBytes, maxAgeNanos);
+    }
+
+    public FlushPolicy maxAge(long maxAge, TimeUnit unit) {
+        return new FlushPolicy(maxMessages, maxBytes, unit.toNanos(maxAge));
+    }
+
+    boolean timed() {
+        return maxAgeNanos != Long.MAX_VALUE;
+    }
+
+    boolean shouldFlush(int messages, int bytes, long firstMessageNanos) {
+        return messages >= maxMessages
+                || bytes >= maxBytes
+                || (timed() && System.nanoTime() - firstMessageNanos >= maxAgeNanos);
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.richardstartin.messagepack;
+
+final class Format {
+
+    // see https://github.com/msgpack/msgpack/blob/master/spec.md
+    static final byte NULL = (byte) 0xC0;
+
+    static final byte FALSE = (byte) 0xC2;
+    static final byte TRUE = (byte) 0xC3;
+
+    static final byte UINT8 = (byte) 0xCC;
+    static final byte UINT16 = (byte) 0xCD;
+    static final byte UINT32 = (byte) 0xCE;
+    static final byte UINT64 = (byte) 0xCF;
+
+
+    static final byte INT8 = (byte) 0xD0;
+    static final byte INT16 = (byte) 0xD1;
+    static final byte INT32 = (byte) 0xD2;
+    static final byte INT64 = (byte) 0xD3;
+
+    static final byte FLOAT32 = (byte) 0xCA;
+    static final byte FLOAT64 = (byte) 0xCB;
+
+    static final byte STR8 = (byte) 0xD9;
+    static final byte STR16 = (byte) 0xDA;
+    static final byte STR32 = (byte) 0xDB;
+
+    static final byte BIN8 = (byte) 0xC4;
+    static final byte BIN16 = (byte) 0xC5;
+    static final byte BIN32 = (byte) 0xC6;
+
+    static final byte ARRAY16 = (byte) 0xDC;
+    static final byte ARRAY32 = (byte) 0xDD;
+
+    static final byte MAP16 = (byte) 0xDE;
+    static final byte MAP32 = (byte) 0xDF;
+
+    static final byte FIXEXT1 = (byte) 0xD4;
+    static final byte FIXEXT2 = (byte) 0xD5;
+    static final byte FIXEXT4 = (byte) 0xD6;
+    static final byte FIXEXT8 = (byte) 0xD7;
+    static final byte FIXEXT16 = (byte) 0xD8;
+    static final byte EXT8 = (byte) 0xC7;
+    static final byte EXT16 = (byte) 0xC8;
+    static final byte EXT32 = (byte) 0xC9;
+
+    static final int NEGFIXNUM = 0xE0;
+    static final int FIXSTR = 0xA0;
+    static final int FIXARRAY = 0x90;
+    static final int FIXMAP = 0x80;
+
+    private Format() {
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Splits a stream of framed envelopes, read in arbitrary chunks, back into
+ * envelopes using only their length prefixes. Envelopes which arrive whole
+ * are handed out as views of the input, and only an envelope split across
+ * chunks is copied, into a buffer which is reused.
+ * Not thread-safe (use one per stream).
+ */
+public final class FrameSplitter {
+
+    private final Framing framing;
+    private final ByteBuffer partial;
+    private long frames;
+
+    /**
+     * @param maxFrameSize the largest envelope, including its prefix, which will be accepted
+     */
+    public FrameSplitter(Framing framing, int maxFrameSize) {
+        if (framing == Framing.NONE) {
+            throw new IllegalArgumentException("envelopes without framing can't be split");
+        }
+        this.framing = framing;
+        this.partial = ByteBuffer.allocate(maxFrameSize);
+    }
+
+    /**
+     * Consumes the input, keeping any incomplete envelope at the end of it
+     * until the next call.
+     *
+     * @param envelopes called with each envelope, positioned at its header and only valid until it returns
+     * @return the number of envelopes found
+     */
+    public int split(ByteBuffer input, Consumer<ByteBuffer> envelopes) {
+        int found = 0;
+        if (partial.position() > 0) {
+            if (!complete(input)) {
+                return 0;
+            }
+            partial.flip();
+            emit(partial, 0, partial.limit(), envelopes);
+            partial.clear();
+            ++found;
+        }
+        while (input.hasRemaining()) {
+            int position = input.position();
+            long prefix = framing.read(input, position, input.limit());
+            if (prefix < 0 || input.remaining() < frameSize(prefix)) {
+                partial.put(input);
+                break;
+            }
+            int end = position + frameSize(prefix);
+            int limit = input.limit();
+            emit(input, position, end, envelopes);
+            input.limit(limit).position(end);
+            ++found;
+        }
+        return found;
+    }
+
+    /**
+     * @return the number of envelopes found so far
+     */
+    public long frames() {
+        return frames;
+    }
+
+    /**
+     * Copies as much of the input as the envelope started in a previous chunk needs.
+     */
+    private boolean complete(ByteBuffer input) {
+        long prefix;
+        // the prefix itself may have been split, it's at most a few bytes so add one at a time
+        while ((prefix = framing.read(partial, 0, partial.position())) < 0) {
+            if (!input.hasRemaining()) {
+                return false;
+            }
+            partial.put(input.get());
+        }
+        int needed = frameSize(prefix) - partial.position();
+        int available = Math.min(needed, input.remaining());
+        ByteBuffer chunk = input.duplicate();
+        chunk.limit(chunk.position() + available);
+        partial.put(chunk);
+        input.position(input.position() + available);
+        return available == needed;
+    }
+
+    private int frameSize(long prefix) {
+        long size = (prefix >>> 8) + (prefix & 0xFF);
+        if (size > partial.capacity()) {
+            throw new IllegalStateException("frame of " + size + " bytes exceeds maximum of " + partial.capacity());
+        }
+        return (int) size;
+    }
+
+    private void emit(ByteBuffer source, int start, int end, Consumer<ByteBuffer> envelopes) {
+        int prefixSize = (int) (framing.read(source, start, end) & 0xFF);
+        source.limit(end).position(start + prefixSize);
+        envelopes.accept(source);
+        ++frames;
+    }
+}
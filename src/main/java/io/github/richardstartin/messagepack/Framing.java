@@ -0,0 +1,106 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A length prefix a {@link Packer} writes in front of each envelope, so
+ * envelopes concatenated on a stream can be told apart by a
+ * {@link FrameSplitter} without parsing them. The length is the size of the
+ * envelope in bytes, not including the prefix. Space for the longest prefix
+ * is reserved in front of the envelope header and the prefix is written
+ * just before the header on flush.
+ */
+public enum Framing {
+    /**
+     * No prefix, envelopes are only delimited by the buffers they are flushed in.
+     */
+    NONE(0),
+    /**
+     * A big-endian 4 byte length.
+     */
+    INT32(4),
+    /**
+     * An unsigned LEB128 varint length, one byte for envelopes of fewer than 128 bytes.
+     */
+    VARINT(5);
+
+    private final int reserved;
+
+    Framing(int reserved) {
+        this.reserved = reserved;
+    }
+
+    /**
+     * @return the space the longest prefix needs
+     */
+    public int reserved() {
+        return reserved;
+    }
+
+    /**
+     * Writes the prefix so it ends at {@code end}.
+     *
+     * @return the position of the prefix
+     */
+    int write(ByteBuffer buffer, int end, int length) {
+        switch (this) {
+            case INT32:
+                buffer.putInt(end - 4, bigEndian(buffer, length));
+                return end - 4;
+            case VARINT:
+                int start = end - varintSize(length);
+                for (int i = start; i < end - 1; ++i) {
+                    buffer.put(i, (byte) (0x80 | (length & 0x7F)));
+                    length >>>= 7;
+                }
+                buffer.put(end - 1, (byte) length);
+                return start;
+            default:
+                return end;
+        }
+    }
+
+    /**
+     * Reads a prefix starting at {@code position}.
+     *
+     * @return the envelope length and the size of the prefix, as {@code length << 8 | size},
+     *         or -1 if the prefix continues past {@code limit}
+     */
+    long read(ByteBuffer buffer, int position, int limit) {
+        switch (this) {
+            case INT32:
+                if (limit - position < 4) {
+                    return -1;
+                }
+                return (bigEndian(buffer, buffer.getInt(position)) & 0xFFFFFFFFL) << 8 | 4;
+            case VARINT:
+                long length = 0;
+                for (int i = 0; i < reserved; ++i) {
+                    if (position + i >= limit) {
+                        return -1;
+                    }
+                    byte b = buffer.get(position + i);
+                    length |= (long) (b & 0x7F) << (7 * i);
+                    if (b >= 0) {
+                        return length << 8 | (i + 1);
+                    }
+                }
+                throw new IllegalStateException("varint frame length longer than " + reserved + " bytes");
+            default:
+                throw new IllegalStateException("no framing");
+        }
+    }
+
+    /**
+     * The prefix is big-endian whatever order the buffer has.
+     */
+    private static int bigEndian(ByteBuffer buffer, int value) {
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+
+    private static int varintSize(int length) {
+        // 7 bits per byte
+        return Math.max(1, (32 - Integer.numberOfLeadingZeros(length) + 6) / 7);
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.richardstartin.messagepack;
+
+/**
+ * Implemented by the writers the annotation processor generates at compile
+ * time for {@link Packable} classes. They're found with a
+ * {@link java.util.ServiceLoader} and registered with every {@link Codec}, so
+ * take precedence over a {@link FieldWriter} without any inspection at runtime.
+ */
+public interface GeneratedWriter<T> extends Writer<T>, Mapper<T> {
+
+    /**
+     * @return the class this writer writes
+     */
+    Class<T> type();
+}
@@ -0,0 +1,145 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+
+import static io.github.richardstartin.messagepack.Format.*;
+
+/**
+ * Encodes blocks of ints and longs into a scratch array without branching on
+ * the size of each value, producing the same bytes as {@link Packer#writeInt(int)}
+ * and {@link Packer#writeLong(long)}.
+ * <p>
+ * The format of a value only depends on its sign and the number of leading
+ * zeros of its magnitude, which together index tables of the size, the marker
+ * byte and the shift which left aligns the payload. Each value is then written as
+ * a marker byte followed by a whole long, and the position only advances by
+ * the encoded size, so the next value overwrites whatever wasn't needed.
+ * Fixints have no marker: their only byte is the value itself, masked in
+ * where the marker would go.
+ */
+final class IntegerEncoding {
+
+    /**
+     * The unused tail of the last value's long needs somewhere to go.
+     */
+    static final int PADDING = Long.BYTES;
+
+    private static final byte[] INT_SIZES = new byte[128];
+    private static final byte[] INT_MARKERS = new byte[128];
+    private static final byte[] INT_FIXMASKS = new byte[128];
+    private static final byte[] INT_SHIFTS = new byte[128];
+
+    private static final byte[] LONG_SIZES = new byte[128];
+    private static final byte[] LONG_MARKERS = new byte[128];
+    private static final byte[] LONG_FIXMASKS = new byte[128];
+    private static final byte[] LONG_SHIFTS = new byte[128];
+
+    static {
+        for (int lz = 0; lz <= 32; ++lz) {
+            // non-negative
+            if (lz <= 15) {
+                intFormat(lz, 5, UINT32);
+            } else if (lz <= 23) {
+                intFormat(lz, 3, UINT16);
+            } else if (lz == 24) {
+                intFormat(lz, 2, UINT8);
+            } else {
+                intFormat(lz, 1, (byte) 0);
+            }
+            // negative, indexed by the leading zeros of the complement
+            if (lz <= 16) {
+                intFormat(64 | lz, 5, INT32);
+            } else if (lz <= 24) {
+                intFormat(64 | lz, 3, INT16);
+            } else if (lz <= 26) {
+                intFormat(64 | lz, 2, INT8);
+            } else {
+                intFormat(64 | lz, 1, (byte) 0);
+            }
+        }
+        for (int lz = 0; lz <= 64; ++lz) {
+            if (lz <= 31) {
+                longFormat(lz, 9, UINT64);
+            } else if (lz <= 47) {
+                longFormat(lz, 5, UINT32);
+            } else if (lz <= 55) {
+                longFormat(lz, 3, UINT16);
+            } else if (lz == 56) {
+                longFormat(lz, 2, UINT8);
+            } else {
+                longFormat(lz, 1, (byte) 0);
+            }
+            if (lz <= 32) {
+                longFormat(64 | lz, 9, INT64);
+            } else if (lz <= 48) {
+                longFormat(64 | lz, 5, INT32);
+            } else if (lz <= 56) {
+                longFormat(64 | lz, 3, INT16);
+            } else if (lz <= 58) {
+                longFormat(64 | lz, 2, INT8);
+            } else {
+                longFormat(64 | lz, 1, (byte) 0);
+            }
+        }
+    }
+
+    private static void intFormat(int index, int size, byte marker) {
+        INT_SIZES[index] = (byte) size;
+        INT_MARKERS[index] = marker;
+        INT_FIXMASKS[index] = (byte) (size == 1 ? 0xFF : 0);
+        // the int is widened to a long before shifting
+        INT_SHIFTS[index] = (byte) (64 - 8 * (size - 1));
+    }
+
+    private static void longFormat(int index, int size, byte marker) {
+        LONG_SIZES[index] = (byte) size;
+        LONG_MARKERS[index] = marker;
+        LONG_FIXMASKS[index] = (byte) (size == 1 ? 0xFF : 0);
+        // a shift of 64 is a shift of 0, which is fine because fixints only keep the marker byte
+        LONG_SHIFTS[index] = (byte) (64 - 8 * (size - 1));
+    }
+
+    private static int index(int value) {
+        return ((value >>> 31) << 6) | Integer.numberOfLeadingZeros(value ^ (value >> 31));
+    }
+
+    private static int index(long value) {
+        return (int) ((value >>> 63) << 6) | Long.numberOfLeadingZeros(value ^ (value >> 63));
+    }
+
+    /**
+     * Encodes {@code values[from, to)} at the start of the scratch buffer, which
+     * must have room for 9 bytes per value plus {@link #PADDING}.
+     *
+     * @return the number of bytes written
+     */
+    static int encode(int[] values, int from, int to, ByteBuffer scratch) {
+        int position = 0;
+        for (int i = from; i < to; ++i) {
+            int value = values[i];
+            int index = index(value);
+            scratch.put(position, (byte) (INT_MARKERS[index] | (value & INT_FIXMASKS[index])));
+            scratch.putLong(position + 1, (long) value << INT_SHIFTS[index]);
+            position += INT_SIZES[index];
+        }
+        return position;
+    }
+
+    /**
+     * Encodes {@code values[from, to)} at the start of the scratch buffer, which
+     * must have room for 9 bytes per value plus {@link #PADDING}.
+     *
+     * @return the number of bytes written
+     */
+    static int encode(long[] values, int from, int to, ByteBuffer scratch) {
+        int position = 0;
+        for (int i = from; i < to; ++i) {
+            long value = values[i];
+            int index = index(value);
+            scratch.put(position, (byte) (LONG_MARKERS[index] | (value & LONG_FIXMASKS[index])));
+            scratch.putLong(position + 1, value << LONG_SHIFTS[index]);
+            position += LONG_SIZES[index];
+        }
+        return position;
+    }
+}
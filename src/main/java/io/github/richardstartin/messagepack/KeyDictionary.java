@@ -0,0 +1,173 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps the raw UTF-8 bytes of repeated strings, such as map keys, to a
+ * canonical string, without decoding or allocating when the bytes have
+ * been seen before. The dictionary has a fixed number of slots and evicts
+ * with a second chance policy when a probe sequence is full.
+ * Not thread-safe (use one per thread).
+ */
+public final class KeyDictionary implements DecodingCache {
+
+    private static final int MAX_PROBES = 8;
+
+    private final int mask;
+    private final int maxKeyLength;
+    private final int[] hashes;
+    private final byte[][] keys;
+    private final String[] values;
+    private final boolean[] referenced;
+
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity the maximum number of strings to hold, rounded up to a power of two
+     * @param maxKeyLength strings longer than this many bytes are decoded but never cached
+     */
+    public KeyDictionary(int capacity, int maxKeyLength) {
+        int slots = Math.max(MAX_PROBES, Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1);
+        this.mask = slots - 1;
+        this.maxKeyLength = maxKeyLength;
+        this.hashes = new int[slots];
+        this.keys = new byte[slots][];
+        this.values = new String[slots];
+        this.referenced = new boolean[slots];
+    }
+
+    public KeyDictionary(int capacity) {
+        this(capacity, 64);
+    }
+
+    @Override
+    public String decode(ByteBuffer buffer, int offset, int length) {
+        if (length > maxKeyLength) {
+            ++misses;
+            return newString(buffer, offset, length);
+        }
+        int hash = hash(buffer, offset, length);
+        int home = hash & mask;
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            int slot = (home + i) & mask;
+            byte[] key = keys[slot];
+            if (null == key) {
+                break;
+            }
+            if (hashes[slot] == hash && matches(key, buffer, offset, length)) {
+                ++hits;
+                referenced[slot] = true;
+                return values[slot];
+            }
+        }
+        ++misses;
+        String value = newString(buffer, offset, length);
+        int slot = victim(home);
+        if (null == keys[slot]) {
+            ++size;
+        } else {
+            ++evictions;
+        }
+        byte[] key = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            key[i] = buffer.get(offset + i);
+        }
+        hashes[slot] = hash;
+        keys[slot] = key;
+        values[slot] = value;
+        referenced[slot] = false;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0D : (double) hits / lookups;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = null;
+            values[i] = null;
+            referenced[i] = false;
+        }
+        size = 0;
+    }
+
+    private int victim(int home) {
+        // slots are never emptied, so an empty slot ends every probe sequence
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            int slot = (home + i) & mask;
+            if (null == keys[slot]) {
+                return slot;
+            }
+        }
+        for (int i = 0; i < MAX_PROBES; ++i) {
+            int slot = (home + i) & mask;
+            if (!referenced[slot]) {
+                return slot;
+            }
+            referenced[slot] = false;
+        }
+        return home;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int hash = length;
+        int i = 0;
+        for (; i + 7 < length; i += 8) {
+            long word = buffer.getLong(offset + i);
+            hash = 0x9E3779B9 * (hash ^ (int) (word ^ (word >>> 32)));
+        }
+        for (; i < length; ++i) {
+            hash = 0x9E3779B9 * (hash ^ buffer.get(offset + i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String newString(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] utf8 = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            utf8[i] = buffer.get(offset + i);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
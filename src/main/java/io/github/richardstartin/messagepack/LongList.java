@@ -0,0 +1,33 @@
+package io.github.richardstartin.messagepack;
+
+/**
+ * A list of longs which can be written without boxing, for adapting a
+ * primitive collection, such as fastutil's {@code LongList}, to
+ * {@link Writable#writeLongs(LongList)}.
+ */
+public interface LongList {
+
+    int size();
+
+    long getLong(int index);
+
+    /**
+     * @return a view of the first {@code length} values of the array
+     */
+    static LongList wrap(long[] values, int length) {
+        if (length < 0 || length > values.length) {
+            throw new IllegalArgumentException("length " + length + " out of range for " + values.length + " values");
+        }
+        return new LongList() {
+            @Override
+            public int size() {
+                return length;
+            }
+
+            @Override
+            public long getLong(int index) {
+                return values[index];
+            }
+        };
+    }
+}
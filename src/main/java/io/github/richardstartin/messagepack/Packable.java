@@ -0,0 +1,16 @@
+package io.github.richardstartin.messagepack;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class, including a record, to be written by {@link Codec} as a map
+ * of its non-static, non-transient field names to their values, rather than
+ * as its {@code toString()}. See {@link FieldWriter}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Packable {
+}
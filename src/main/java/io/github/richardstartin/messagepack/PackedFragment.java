@@ -0,0 +1,66 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Values packed once up front, such as a tag map shared by every message,
+ * which can be spliced into any message with {@link Writable#writeRaw(PackedFragment)}
+ * in a single copy. Immutable.
+ */
+public final class PackedFragment {
+
+    private static final int INITIAL_SIZE = 256;
+    private static final int MAX_SIZE = 1 << 30;
+
+    final byte[] packed;
+
+    private PackedFragment(byte[] packed) {
+        this.packed = packed;
+    }
+
+    public static <T> PackedFragment pack(T value, Mapper<T> mapper) {
+        return pack(Codec.INSTANCE, value, mapper);
+    }
+
+    /**
+     * Packs whatever the mapper writes, which needn't be a single value:
+     * writing key value pairs without a header makes a fragment which can
+     * be spliced into a map with more entries.
+     */
+    public static <T> PackedFragment pack(Codec codec, T value, Mapper<T> mapper) {
+        Capture capture = new Capture();
+        for (int size = INITIAL_SIZE; ; size <<= 1) {
+            try {
+                Packer packer = new Packer(codec, capture, ByteBuffer.allocate(size));
+                packer.serialise(value, mapper);
+                packer.flush();
+                return new PackedFragment(capture.packed);
+            } catch (BufferOverflowException e) {
+                if (size >= MAX_SIZE) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the size of the fragment in bytes
+     */
+    public int size() {
+        return packed.length;
+    }
+
+    private static final class Capture implements Consumer<ByteBuffer> {
+
+        byte[] packed;
+
+        @Override
+        public void accept(ByteBuffer envelope) {
+            new Unpacker(envelope).readEnvelopeHeader();
+            packed = new byte[envelope.remaining()];
+            envelope.get(packed);
+        }
+    }
+}
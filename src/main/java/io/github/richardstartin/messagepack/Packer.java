@@ -1,9 +1,15 @@
 package io.github.richardstartin.messagepack;
 
+import java.lang.reflect.Modifier;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static io.github.richardstartin.messagepack.Format.*;
 
 /**
  * Not thread-safe (use one per thread).
@@ -11,61 +17,71 @@ import java.util.function.Consumer;
 public class Packer implements Writable, Serialiser {
 
     private static final int UTF8_BUFFER_SIZE = 8;
+    private static final int INTEGER_BLOCK_SIZE = 64;
     private static final int MAX_ARRAY_HEADER_SIZE = 5;
 
-    // see https://github.com/msgpack/msgpack/blob/master/spec.md
-    private static final byte NULL = (byte) 0xC0;
-
-    private static final byte FALSE = (byte) 0xC2;
-    private static final byte TRUE = (byte) 0xC3;
-
-    private static final byte UINT8 = (byte) 0xCC;
-    private static final byte UINT16 = (byte) 0xCD;
-    private static final byte UINT32 = (byte) 0xCE;
-    private static final byte UINT64 = (byte) 0xCF;
-
-
-    private static final byte INT8 = (byte) 0xD0;
-    private static final byte INT16 = (byte) 0xD1;
-    private static final byte INT32 = (byte) 0xD2;
-    private static final byte INT64 = (byte) 0xD3;
-
-    private static final byte FLOAT32 = (byte) 0xCA;
-    private static final byte FLOAT64 = (byte) 0xCB;
-
-    private static final byte STR8 = (byte) 0xD9;
-    private static final byte STR16 = (byte) 0xDA;
-    private static final byte STR32 = (byte) 0xDB;
-
-    private static final byte BIN8 = (byte) 0xC4;
-    private static final byte BIN16 = (byte) 0xC5;
-    private static final byte BIN32 = (byte) 0xC6;
-
-    private static final byte ARRAY16 = (byte) 0xDC;
-    private static final byte ARRAY32 = (byte) 0xDD;
-
-    private static final byte MAP16 = (byte) 0xDE;
-    private static final byte MAP32 = (byte) 0xDF;
-
-    private static final int NEGFIXNUM = 0xE0;
-    private static final int FIXSTR = 0xA0;
-    private static final int FIXARRAY = 0x90;
-    private static final int FIXMAP = 0x80;
-
     private final Codec codec;
 
     private final Consumer<ByteBuffer> blockingSink;
-    private final ByteBuffer buffer;
+    // null when flushed buffers are handed over to the sink
+    private final ByteBuffer initialBuffer;
+    private final Supplier<ByteBuffer> buffers;
+    private final int maxBufferSize;
+    private ByteBuffer buffer;
+    // the buffer an oversized message outgrew, which is packed into again once the larger one is flushed
+    private ByteBuffer outgrown;
     private int messageCount = 0;
+    private boolean serialising;
+    private boolean overflow;
+    private FlushPolicy flushPolicy = FlushPolicy.onOverflow();
+    private Framing framing = Framing.NONE;
+    // where the first message goes, after the space reserved for the frame prefix and envelope header
+    private int start = MAX_ARRAY_HEADER_SIZE;
+    private long firstMessageNanos;
+    private volatile boolean flushRequested;
 
     private final byte[] utf8Buffer = new byte[UTF8_BUFFER_SIZE * 4];
+    private final ByteBuffer integerBuffer = ByteBuffer.allocate(INTEGER_BLOCK_SIZE * 9 + IntegerEncoding.PADDING);
+
+    /**
+     * @param maxBufferSize a message which doesn't fit in the buffer on its own is written into
+     *                      a larger temporary buffer of up to this size, instead of being rejected
+     */
+    public Packer(Codec codec, Consumer<ByteBuffer> blockingSink, ByteBuffer buffer, int maxBufferSize) {
+        this(codec, blockingSink, buffer, null, maxBufferSize);
+    }
 
     public Packer(Codec codec, Consumer<ByteBuffer> blockingSink, ByteBuffer buffer) {
+        this(codec, blockingSink, buffer, buffer.capacity());
+    }
+
+    /**
+     * Hands each flushed buffer over to the sink instead of reusing it, and carries on
+     * packing into the next buffer from {@code buffers}, so the sink can write one buffer
+     * while the next is filled. The sink receives the buffer positioned at the start of
+     * the envelope and owns it from then on, e.g. to release it back to a {@link BufferPool},
+     * even if it throws.
+     *
+     * @param maxBufferSize a message which doesn't fit in the buffer on its own is written into
+     *                      a larger temporary buffer of up to this size, instead of being rejected
+     */
+    public Packer(Codec codec, Consumer<ByteBuffer> sink, Supplier<ByteBuffer> buffers, int maxBufferSize) {
+        this(codec, sink, null, buffers, maxBufferSize);
+    }
+
+    public Packer(Codec codec, Consumer<ByteBuffer> sink, Supplier<ByteBuffer> buffers) {
+        this(codec, sink, buffers, 0);
+    }
+
+    private Packer(Codec codec, Consumer<ByteBuffer> blockingSink, ByteBuffer initialBuffer,
+                   Supplier<ByteBuffer> buffers, int maxBufferSize) {
         this.codec = codec;
         this.blockingSink = blockingSink;
-        this.buffer = buffer;
-        this.buffer.position(MAX_ARRAY_HEADER_SIZE);
-        buffer.mark();
+        this.initialBuffer = initialBuffer;
+        this.buffers = buffers;
+        this.buffer = null == initialBuffer ? buffers.get() : initialBuffer;
+        this.maxBufferSize = Math.max(maxBufferSize, buffer.capacity());
+        reset();
     }
 
     public Packer(Consumer<ByteBuffer> blockingSink, ByteBuffer buffer) {
@@ -74,46 +90,192 @@ public class Packer implements Writable, Serialiser {
 
     @Override
     public <T> void serialise(T message, Mapper<T> mapper) {
-        try {
-            mapper.map(message, this);
-            buffer.mark();
-            ++messageCount;
-        } catch (BufferOverflowException e) {
+        while (true) {
+            serialising = true;
+            try {
+                mapper.map(message, this);
+            } catch (RuntimeException | Error e) {
+                // drop whatever was written of the message so the next one starts cleanly
+                overflow = false;
+                buffer.reset();
+                throw e;
+            } finally {
+                serialising = false;
+            }
+            if (!overflow) {
+                buffer.mark();
+                if (++messageCount == 1 && flushPolicy.timed()) {
+                    firstMessageNanos = System.nanoTime();
+                }
+                if (flushRequested || flushPolicy.shouldFlush(messageCount, size(), firstMessageNanos)) {
+                    flush();
+                }
+                return;
+            }
+            overflow = false;
             // go back to the last successfully written message
             buffer.reset();
-            if (buffer.position() == MAX_ARRAY_HEADER_SIZE) {
-                throw e;
+            if (buffer.position() == start) {
+                if (buffer.capacity() >= maxBufferSize) {
+                    throw new BufferOverflowException();
+                }
+                grow();
+            } else {
+                flush();
             }
-            flush();
-            serialise(message, mapper);
         }
     }
 
     @Override
     public void flush() {
         buffer.flip();
-        int pos = 0;
+        int pos = start - MAX_ARRAY_HEADER_SIZE;
         if (messageCount < 0x10) {
-            pos = 4;
+            pos += 4;
         } else if (messageCount < 0x10000) {
-            pos = 2;
+            pos += 2;
         }
         buffer.position(pos);
-        writeArrayHeader(messageCount);
-        buffer.position(pos);
-        blockingSink.accept(buffer.slice());
-        buffer.position(MAX_ARRAY_HEADER_SIZE);
-        this.messageCount = 0;
+        writeArrayHeader(buffer, messageCount);
+        buffer.position(framing.write(buffer, pos, buffer.limit() - pos));
+        try {
+            blockingSink.accept(null == initialBuffer ? buffer : buffer.slice());
+        } finally {
+            // a buffer handed over belongs to the sink even if it throws, so is never written to again,
+            // and oversized messages only borrow a larger buffer until they're flushed
+            if (null != outgrown) {
+                buffer = outgrown;
+                outgrown = null;
+            } else {
+                buffer = null == initialBuffer ? buffers.get() : initialBuffer;
+            }
+            reset();
+            this.messageCount = 0;
+            this.flushRequested = false;
+        }
+    }
+
+    /**
+     * Sets when to flush without waiting for the buffer to fill up.
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+        if (messageCount > 0) {
+            // the age of messages already buffered wasn't tracked, so count it from now
+            firstMessageNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Prefixes each envelope with its length, so envelopes written to a stream can
+     * be split apart again. Must be set before anything is packed.
+     */
+    public void setFraming(Framing framing) {
+        if (buffer.position() != start) {
+            throw new IllegalStateException("framing must be set before packing");
+        }
+        this.framing = framing;
+        this.start = framing.reserved() + MAX_ARRAY_HEADER_SIZE;
+        reset();
+    }
+
+    /**
+     * Asks the packer to flush after the next message, and can be called from any
+     * thread, such as a timer's. The thread which owns the packer can call
+     * {@link #flushIfDue()} when it is idle so requests don't wait for a message.
+     */
+    public void requestFlush() {
+        flushRequested = true;
+    }
+
+    /**
+     * Flushes if a flush has been requested or the flush policy's maximum age has
+     * been reached. Must be called by the thread which owns the packer.
+     *
+     * @return whether the packer flushed
+     */
+    public boolean flushIfDue() {
+        if (messageCount == 0) {
+            // nothing to flush
+            flushRequested = false;
+            return false;
+        }
+        if ((flushRequested || flushPolicy.shouldFlush(messageCount, size(), firstMessageNanos))) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of messages which haven't been flushed
+     */
+    public int messageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return the size in bytes of the messages which haven't been flushed
+     */
+    public int size() {
+        return buffer.position() - start;
+    }
+
+    private void reset() {
+        buffer.clear();
+        buffer.position(start);
+        buffer.mark();
+    }
+
+    /**
+     * Checks there is space for the next write. Inside {@link #serialise(Object, Mapper)}
+     * running out of space is recorded and the rest of the message is skipped, so it can be
+     * written again after flushing without unwinding the stack with an exception.
+     */
+    private boolean fits(int bytes) {
+        if (buffer.remaining() >= bytes && !overflow) {
+            return true;
+        }
+        if (!serialising) {
+            throw new BufferOverflowException();
+        }
+        overflow = true;
+        return false;
+    }
+
+    private boolean fitsUTF8(CharSequence s) {
+        // no char takes more than 3 bytes, so only measure strings near the end of the buffer
+        if (buffer.remaining() >= s.length() * 3 + MAX_ARRAY_HEADER_SIZE && !overflow) {
+            return true;
+        }
+        int length = utf8Length(s);
+        return fits(length + headerSize(length));
+    }
+
+    private void grow() {
+        int size = (int) Math.min(maxBufferSize, buffer.capacity() * 2L);
+        ByteBuffer larger = buffer.isDirect() ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        larger.order(buffer.order());
+        larger.position(start);
+        larger.mark();
+        if (null == outgrown) {
+            outgrown = buffer;
+        }
+        buffer = larger;
     }
 
     @Override
     public void writeNull() {
-        buffer.put(NULL);
+        if (fits(1)) {
+            buffer.put(NULL);
+        }
     }
 
     @Override
     public void writeBoolean(boolean value) {
-        buffer.put(value ? TRUE : FALSE);
+        if (fits(1)) {
+            buffer.put(value ? TRUE : FALSE);
+        }
     }
 
     @Override
@@ -136,6 +298,129 @@ public class Packer implements Writable, Serialiser {
         }
     }
 
+    /**
+     * Writes every element with the writer for the declared element type,
+     * which is looked up once rather than once per element. Elements are written
+     * exactly as the declared type would be, so a subclass with a writer of its
+     * own, e.g. a {@link Packable} subclass with extra fields, is written as its
+     * declared supertype: use {@link #writeObject(Object, EncodingCache)} for
+     * collections of mixed types.
+     *
+     * @throws IllegalArgumentException if the declared type is an interface or
+     * non-final class which the codec would only write with {@code String.valueOf},
+     * such as {@code Number} or {@code Object}, since its elements may well have
+     * writers of their own
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> void writeCollection(Collection<? extends T> collection, Class<T> elementType, EncodingCache encodingCache) {
+        Writer<T> writer = (Writer<T>) codec.get(elementType);
+        if (Codec.isFallback(writer) && !Modifier.isFinal(elementType.getModifiers())) {
+            throw new IllegalArgumentException("no writer for " + elementType.getName() + ", use writeObject instead");
+        }
+        writeArrayHeader(collection.size());
+        for (T value : collection) {
+            if (null == value) {
+                writeNull();
+            } else {
+                writer.write(value, this, encodingCache);
+            }
+        }
+    }
+
+    /**
+     * Writes the elements of a collection of unknown type, only looking up a
+     * writer when the element class changes, which for the usual homogeneous
+     * collection is once.
+     */
+    @SuppressWarnings("unchecked")
+    void writeElements(Collection<?> collection, EncodingCache encodingCache) {
+        writeArrayHeader(collection.size());
+        Class<?> lastClass = null;
+        Writer<Object> writer = null;
+        for (Object value : collection) {
+            if (null == value) {
+                writeNull();
+            } else {
+                if (value.getClass() != lastClass) {
+                    lastClass = value.getClass();
+                    writer = (Writer<Object>) codec.get(lastClass);
+                }
+                writer.write(value, this, encodingCache);
+            }
+        }
+    }
+
+    void writeElements(Object[] array, EncodingCache encodingCache) {
+        writeElements(Arrays.asList(array), encodingCache);
+    }
+
+    @Override
+    public void writeMap(DoubleValuedMap<? extends CharSequence> map, EncodingCache encodingCache) {
+        int size = map.size();
+        writeMapHeader(size);
+        for (int i = 0; i < size; ++i) {
+            writeString(map.keyAt(i), encodingCache);
+            writeDouble(map.valueAt(i));
+        }
+    }
+
+    @Override
+    public void writeLongs(LongList values) {
+        int size = values.size();
+        writeArrayHeader(size);
+        for (int i = 0; i < size; ++i) {
+            writeLong(values.getLong(i));
+        }
+    }
+
+    /**
+     * Encodes the values a block at a time into a scratch array, so there's
+     * one space check and one copy into the buffer per block rather than per value.
+     */
+    @Override
+    public void writeInts(int[] values) {
+        writeArrayHeader(values.length);
+        byte[] block = integerBuffer.array();
+        for (int i = 0; i < values.length; i += INTEGER_BLOCK_SIZE) {
+            int size = IntegerEncoding.encode(values, i, Math.min(values.length, i + INTEGER_BLOCK_SIZE), integerBuffer);
+            if (!fits(size)) {
+                return;
+            }
+            buffer.put(block, 0, size);
+        }
+    }
+
+    /**
+     * Encodes the values a block at a time into a scratch array, so there's
+     * one space check and one copy into the buffer per block rather than per value.
+     */
+    @Override
+    public void writeLongs(long[] values) {
+        writeArrayHeader(values.length);
+        byte[] block = integerBuffer.array();
+        for (int i = 0; i < values.length; i += INTEGER_BLOCK_SIZE) {
+            int size = IntegerEncoding.encode(values, i, Math.min(values.length, i + INTEGER_BLOCK_SIZE), integerBuffer);
+            if (!fits(size)) {
+                return;
+            }
+            buffer.put(block, 0, size);
+        }
+    }
+
+    @Override
+    public void writeDoubles(DoubleList values) {
+        int size = values.size();
+        // doubles are always 9 bytes so the whole list can be checked at once
+        if (fits((int) Math.min(Integer.MAX_VALUE, arrayHeaderSize(size) + 9L * size))) {
+            writeArrayHeader(buffer, size);
+            for (int i = 0; i < size; ++i) {
+                buffer.put(FLOAT64);
+                buffer.putDouble(values.getDouble(i));
+            }
+        }
+    }
+
     @Override
     public void writeString(CharSequence s, EncodingCache encodingCache) {
         if (null == s) {
@@ -143,11 +428,18 @@ public class Packer implements Writable, Serialiser {
         } else {
             byte[] utf8 = encodingCache.encode(s);
             if (null == utf8) {
+                if (!fitsUTF8(s)) {
+                    return;
+                }
                 if (s.length() < UTF8_BUFFER_SIZE) {
                     utf8EncodeWithArray(s);
                 } else {
                     utf8Encode(s);
                 }
+            } else if (encodingCache.includesHeader()) {
+                if (fits(utf8.length)) {
+                    buffer.put(utf8);
+                }
             } else {
                 writeUTF8(utf8, 0, utf8.length);
             }
@@ -156,7 +448,7 @@ public class Packer implements Writable, Serialiser {
 
     private void utf8EncodeWithArray(CharSequence s) {
         int mark = buffer.position();
-        writeStringHeader(s.length());
+        writeStringHeader(buffer, s.length());
         int actualLength = utf8EncodeViaArray(s, 0);
         if (actualLength > s.length()) {
             int lengthWritten = stringLength(s.length());
@@ -164,7 +456,7 @@ public class Packer implements Writable, Serialiser {
             if (lengthRequired != lengthWritten) {
                 // could shift the string itself to the right but just do it again
                 buffer.position(mark);
-                writeStringHeader(actualLength);
+                writeStringHeader(buffer, actualLength);
                 utf8EncodeViaArray(s, 0);
             } else { // just go back and fix it
                 fixStringHeaderInPlace(mark, lengthRequired, actualLength);
@@ -215,7 +507,7 @@ public class Packer implements Writable, Serialiser {
 
     private void utf8Encode(CharSequence s) {
         int mark = buffer.position();
-        writeStringHeader(s.length());
+        writeStringHeader(buffer, s.length());
         int actualLength = utf8EncodeSWAR(s);
         if (actualLength > s.length()) {
             int lengthWritten = stringLength(s.length());
@@ -223,7 +515,7 @@ public class Packer implements Writable, Serialiser {
             if (lengthRequired != lengthWritten) {
                 // could shift the string itself to the right but just do it again
                 buffer.position(mark);
-                writeStringHeader(actualLength);
+                writeStringHeader(buffer, actualLength);
                 utf8EncodeSWAR(s);
             } else { // just go back and fix it
                 fixStringHeaderInPlace(mark, lengthRequired, actualLength);
@@ -302,21 +594,27 @@ public class Packer implements Writable, Serialiser {
 
     @Override
     public void writeUTF8(byte[] string, int offset, int length) {
-        writeStringHeader(length);
-        buffer.put(string, offset, length);
+        if (fits(length + headerSize(length))) {
+            writeStringHeader(buffer, length);
+            buffer.put(string, offset, length);
+        }
     }
 
     @Override
     public void writeBinary(byte[] binary, int offset, int length) {
-        writeBinaryHeader(length);
-        buffer.put(binary, offset, length);
+        if (fits(length + binaryHeaderSize(length))) {
+            writeBinaryHeader(buffer, length);
+            buffer.put(binary, offset, length);
+        }
     }
 
     @Override
     public void writeBinary(ByteBuffer binary) {
         ByteBuffer slice = binary.slice();
-        writeBinaryHeader(slice.limit() - slice.position());
-        buffer.put(slice);
+        if (fits(slice.remaining() + binaryHeaderSize(slice.remaining()))) {
+            writeBinaryHeader(buffer, slice.remaining());
+            buffer.put(slice);
+        }
     }
 
     @Override
@@ -340,8 +638,10 @@ public class Packer implements Writable, Serialiser {
                 case 14:
                 case 15:
                 case 16:
-                    buffer.put(INT32);
-                    buffer.putInt(value);
+                    if (fits(5)) {
+                        buffer.put(INT32);
+                        buffer.putInt(value);
+                    }
                     break;
                 case 17:
                 case 18:
@@ -351,13 +651,17 @@ public class Packer implements Writable, Serialiser {
                 case 22:
                 case 23:
                 case 24:
-                    buffer.put(INT16);
-                    buffer.putChar((char) value);
+                    if (fits(3)) {
+                        buffer.put(INT16);
+                        buffer.putChar((char) value);
+                    }
                     break;
                 case 25:
                 case 26:
-                    buffer.put(INT8);
-                    buffer.put((byte) value);
+                    if (fits(2)) {
+                        buffer.put(INT8);
+                        buffer.put((byte) value);
+                    }
                     break;
                 case 27:
                 case 28:
@@ -366,7 +670,9 @@ public class Packer implements Writable, Serialiser {
                 case 31:
                 case 32:
                 default:
-                    buffer.put((byte) (NEGFIXNUM | value));
+                    if (fits(1)) {
+                        buffer.put((byte) (NEGFIXNUM | value));
+                    }
             }
         } else {
             switch (Integer.numberOfLeadingZeros(value)) {
@@ -386,8 +692,10 @@ public class Packer implements Writable, Serialiser {
                 case 13:
                 case 14:
                 case 15:
-                    buffer.put(UINT32);
-                    buffer.putInt(value);
+                    if (fits(5)) {
+                        buffer.put(UINT32);
+                        buffer.putInt(value);
+                    }
                     break;
                 case 16:
                 case 17:
@@ -397,12 +705,16 @@ public class Packer implements Writable, Serialiser {
                 case 21:
                 case 22:
                 case 23:
-                    buffer.put(UINT16);
-                    buffer.putChar((char) value);
+                    if (fits(3)) {
+                        buffer.put(UINT16);
+                        buffer.putChar((char) value);
+                    }
                     break;
                 case 24:
-                    buffer.put(UINT8);
-                    buffer.put((byte) value);
+                    if (fits(2)) {
+                        buffer.put(UINT8);
+                        buffer.put((byte) value);
+                    }
                     break;
                 case 25:
                 case 26:
@@ -413,7 +725,9 @@ public class Packer implements Writable, Serialiser {
                 case 31:
                 case 32:
                 default:
-                    buffer.put((byte) value);
+                    if (fits(1)) {
+                        buffer.put((byte) value);
+                    }
             }
         }
     }
@@ -455,8 +769,10 @@ public class Packer implements Writable, Serialiser {
                 case 30:
                 case 31:
                 case 32:
-                    buffer.put(INT64);
-                    buffer.putLong(value);
+                    if (fits(9)) {
+                        buffer.put(INT64);
+                        buffer.putLong(value);
+                    }
                     break;
                 case 33:
                 case 34:
@@ -474,8 +790,10 @@ public class Packer implements Writable, Serialiser {
                 case 46:
                 case 47:
                 case 48:
-                    buffer.put(INT32);
-                    buffer.putInt((int) value);
+                    if (fits(5)) {
+                        buffer.put(INT32);
+                        buffer.putInt((int) value);
+                    }
                     break;
                 case 49:
                 case 50:
@@ -485,13 +803,17 @@ public class Packer implements Writable, Serialiser {
                 case 54:
                 case 55:
                 case 56:
-                    buffer.put(INT16);
-                    buffer.putChar((char) value);
+                    if (fits(3)) {
+                        buffer.put(INT16);
+                        buffer.putChar((char) value);
+                    }
                     break;
                 case 57:
                 case 58:
-                    buffer.put(INT8);
-                    buffer.put((byte) value);
+                    if (fits(2)) {
+                        buffer.put(INT8);
+                        buffer.put((byte) value);
+                    }
                     break;
                 case 59:
                 case 60:
@@ -500,7 +822,9 @@ public class Packer implements Writable, Serialiser {
                 case 63:
                 case 64:
                 default:
-                    buffer.put((byte) (NEGFIXNUM | value));
+                    if (fits(1)) {
+                        buffer.put((byte) (NEGFIXNUM | value));
+                    }
             }
         } else {
             switch (Long.numberOfLeadingZeros(value)) {
@@ -536,8 +860,10 @@ public class Packer implements Writable, Serialiser {
                 case 29:
                 case 30:
                 case 31:
-                    buffer.put(UINT64);
-                    buffer.putLong(value);
+                    if (fits(9)) {
+                        buffer.put(UINT64);
+                        buffer.putLong(value);
+                    }
                     break;
                 case 32:
                 case 33:
@@ -555,8 +881,10 @@ public class Packer implements Writable, Serialiser {
                 case 45:
                 case 46:
                 case 47:
-                    buffer.put(UINT32);
-                    buffer.putInt((int) value);
+                    if (fits(5)) {
+                        buffer.put(UINT32);
+                        buffer.putInt((int) value);
+                    }
                     break;
                 case 48:
                 case 49:
@@ -566,12 +894,16 @@ public class Packer implements Writable, Serialiser {
                 case 53:
                 case 54:
                 case 55:
-                    buffer.put(UINT16);
-                    buffer.putChar((char) value);
+                    if (fits(3)) {
+                        buffer.put(UINT16);
+                        buffer.putChar((char) value);
+                    }
                     break;
                 case 56:
-                    buffer.put(UINT8);
-                    buffer.put((byte) value);
+                    if (fits(2)) {
+                        buffer.put(UINT8);
+                        buffer.put((byte) value);
+                    }
                     break;
                 case 57:
                 case 59:
@@ -581,24 +913,43 @@ public class Packer implements Writable, Serialiser {
                 case 63:
                 case 64:
                 default:
-                    buffer.put((byte) value);
+                    if (fits(1)) {
+                        buffer.put((byte) value);
+                    }
             }
         }
     }
 
     @Override
     public void writeFloat(float value) {
-        buffer.put(FLOAT32);
-        buffer.putFloat(value);
+        if (fits(5)) {
+            buffer.put(FLOAT32);
+            buffer.putFloat(value);
+        }
     }
 
     @Override
     public void writeDouble(double value) {
-        buffer.put(FLOAT64);
-        buffer.putDouble(value);
+        if (fits(9)) {
+            buffer.put(FLOAT64);
+            buffer.putDouble(value);
+        }
+    }
+
+    @Override
+    public void writeRaw(PackedFragment fragment) {
+        if (fits(fragment.packed.length)) {
+            buffer.put(fragment.packed);
+        }
     }
 
     public void writeStringHeader(int length) {
+        if (fits(headerSize(length))) {
+            writeStringHeader(buffer, length);
+        }
+    }
+
+    static void writeStringHeader(ByteBuffer buffer, int length) {
         if (length < 0x10) {
             buffer.put((byte) (FIXSTR | length));
         } else if (length < 0x100) {
@@ -614,6 +965,12 @@ public class Packer implements Writable, Serialiser {
     }
 
     public void writeArrayHeader(int length) {
+        if (fits(arrayHeaderSize(length))) {
+            writeArrayHeader(buffer, length);
+        }
+    }
+
+    static void writeArrayHeader(ByteBuffer buffer, int length) {
         if (length < 0x10) {
             buffer.put((byte) (FIXARRAY | length));
         } else if (length < 0x10000) {
@@ -625,19 +982,28 @@ public class Packer implements Writable, Serialiser {
         }
     }
 
+    @Override
     public void writeMapHeader(int length) {
-        if (length < 0x10) {
-            buffer.put((byte) (FIXMAP | length));
-        } else if (length < 0x10000) {
-            buffer.put(MAP16);
-            buffer.putChar((char) length);
-        } else {
-            buffer.put(MAP32);
-            buffer.putInt(length);
+        if (fits(arrayHeaderSize(length))) {
+            if (length < 0x10) {
+                buffer.put((byte) (FIXMAP | length));
+            } else if (length < 0x10000) {
+                buffer.put(MAP16);
+                buffer.putChar((char) length);
+            } else {
+                buffer.put(MAP32);
+                buffer.putInt(length);
+            }
         }
     }
 
     public void writeBinaryHeader(int length) {
+        if (fits(binaryHeaderSize(length))) {
+            writeBinaryHeader(buffer, length);
+        }
+    }
+
+    private static void writeBinaryHeader(ByteBuffer buffer, int length) {
         if (length < 0x100) {
             buffer.put(BIN8);
             buffer.put((byte) length);
@@ -650,6 +1016,66 @@ public class Packer implements Writable, Serialiser {
         }
     }
 
+    /**
+     * @return the size of an array or map header
+     */
+    private static int arrayHeaderSize(int length) {
+        if (length < 0x10) {
+            return 1;
+        } else if (length < 0x10000) {
+            return 3;
+        } else {
+            return 5;
+        }
+    }
+
+    private static int binaryHeaderSize(int length) {
+        if (length < 0x100) {
+            return 2;
+        } else if (length < 0x10000) {
+            return 3;
+        } else {
+            return 5;
+        }
+    }
+
+    private static int headerSize(int length) {
+        if (length < 0x10) {
+            return 1;
+        } else if (length < 0x100) {
+            return 2;
+        } else if (length < 0x10000) {
+            return 3;
+        } else {
+            return 5;
+        }
+    }
+
+    /**
+     * @return the number of bytes the encoders will write for the string, which
+     * follows their substitution of '?' for malformed surrogates
+     */
+    private static int utf8Length(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                ++length;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || ++i == s.length()) {
+                    ++length;
+                } else {
+                    length += Character.isLowSurrogate(s.charAt(i)) ? 4 : 2;
+                }
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
     private static int stringLength(int length) {
         if (length < 0x10) {
             return FIXSTR;
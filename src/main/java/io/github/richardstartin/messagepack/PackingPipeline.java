@@ -0,0 +1,110 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets any number of threads serialise messages into one output. Each
+ * producer thread packs into its own {@link Packer}, and flushed envelopes
+ * are collected in a lock-free queue. A single writer calls {@link #drain()}
+ * to merge the queued envelopes into one messagepack array, which is passed
+ * to the sink as a header followed by the bodies of the envelopes, ready for
+ * a gathering write. Messages flushed by the same thread stay in order.
+ * <p>
+ * Each producer holds on to a buffer between flushes, so the pool needs more
+ * buffers than there are producer threads, or producers will wait.
+ */
+public final class PackingPipeline implements Serialiser {
+
+    public interface GatheringSink {
+        /**
+         * @param buffers the merged envelope, only valid until this returns
+         * @param length the number of buffers to write
+         */
+        void write(ByteBuffer[] buffers, int length);
+    }
+
+    private final GatheringSink sink;
+    private final BufferPool pool;
+    private final Queue<ByteBuffer> flushed = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Packer> packers;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ByteBuffer header = ByteBuffer.allocate(5);
+    private final Unpacker unpacker = new Unpacker();
+    private final ByteBuffer[] batch;
+
+    /**
+     * @param maxBatch the maximum number of envelopes to merge into one write
+     */
+    public PackingPipeline(Codec codec, GatheringSink sink, BufferPool pool, int maxBatch) {
+        this.sink = sink;
+        this.pool = pool;
+        this.batch = new ByteBuffer[maxBatch + 1];
+        this.packers = ThreadLocal.withInitial(() -> new Packer(codec, flushed::offer, pool::acquire));
+    }
+
+    public PackingPipeline(GatheringSink sink, BufferPool pool) {
+        this(Codec.INSTANCE, sink, pool, pool.buffers());
+    }
+
+    /**
+     * Packs the message into the calling thread's buffer.
+     */
+    @Override
+    public <T> void serialise(T message, Mapper<T> mapper) {
+        packers.get().serialise(message, mapper);
+    }
+
+    /**
+     * Queues the messages packed by the calling thread for the writer.
+     */
+    @Override
+    public void flush() {
+        packers.get().flush();
+    }
+
+    /**
+     * Merges the envelopes flushed so far and writes them to the sink. Only one
+     * thread drains at a time, so concurrent calls return immediately.
+     *
+     * @return the number of messages written
+     */
+    public int drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            int length = 1;
+            ByteBuffer envelope;
+            while (length < batch.length && null != (envelope = flushed.poll())) {
+                int count = unpacker.wrap(envelope).readEnvelopeHeader();
+                if (count == 0) {
+                    pool.release(envelope);
+                } else {
+                    total += count;
+                    batch[length++] = envelope;
+                }
+            }
+            try {
+                if (total > 0) {
+                    header.clear();
+                    Packer.writeArrayHeader(header, total);
+                    header.flip();
+                    batch[0] = header;
+                    sink.write(batch, length);
+                }
+            } finally {
+                for (int i = 1; i < length; ++i) {
+                    pool.release(batch[i]);
+                    batch[i] = null;
+                }
+            }
+            return total;
+        } finally {
+            draining.set(false);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.richardstartin.messagepack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import static io.github.richardstartin.messagepack.Format.ARRAY32;
+import static io.github.richardstartin.messagepack.SpoolWriter.ENVELOPE_HEADER_SIZE;
+
+/**
+ * Replays the envelopes a {@link SpoolWriter} spooled, mapping each segment
+ * and handing out messages without copying them. Reading a segment stops at
+ * the first envelope which was never flushed or can't be parsed, and moves on
+ * to the next segment once there is one, so a corrupt tail left by a crash is
+ * skipped, while the segment still being written can be read again later.
+ * <p>
+ * {@link #sequence()} and {@link #offset()} give the position after the last
+ * envelope read, which can be stored to resume from after a restart.
+ * Not thread-safe.
+ */
+public final class SpoolReader implements AutoCloseable {
+
+    private final Path directory;
+    private final Unpacker unpacker = new Unpacker();
+
+    private long sequence;
+    private int offset;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private ByteBuffer message;
+    private long corruptSegments;
+
+    /**
+     * Resumes reading after the envelope ending at {@code offset} in segment {@code sequence}.
+     */
+    public SpoolReader(Path directory, long sequence, int offset) {
+        this.directory = directory;
+        this.sequence = sequence;
+        this.offset = offset;
+    }
+
+    public SpoolReader(Path directory) throws IOException {
+        this(directory, firstSequence(directory), 0);
+    }
+
+    /**
+     * Reads every complete envelope spooled so far.
+     *
+     * @param messages called with a view of each message, only valid until it returns
+     * @return the number of messages read
+     */
+    public int read(Consumer<ByteBuffer> messages) {
+        int read = 0;
+        while (map()) {
+            int end;
+            while ((end = validate()) >= 0) {
+                unpacker.wrap(segment);
+                segment.limit(end).position(offset);
+                int count = unpacker.readEnvelopeHeader();
+                for (int i = 0; i < count; ++i) {
+                    int start = segment.position();
+                    unpacker.skip();
+                    message.limit(segment.position()).position(start);
+                    messages.accept(message);
+                }
+                read += count;
+                offset = end;
+            }
+            if (!next()) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads every complete envelope spooled so far, decoding messages in place.
+     *
+     * @return the number of messages read
+     */
+    public <T> int read(T target, Unmapper<T> unmapper) {
+        int read = 0;
+        while (map()) {
+            int end;
+            while ((end = validate()) >= 0) {
+                segment.limit(end).position(offset);
+                read += unpacker.deserialise(segment, target, unmapper);
+                offset = end;
+            }
+            if (!next()) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * @return the sequence number of the segment being read
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the end of the last envelope read in the current segment
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return the number of segments left with a tail which couldn't be parsed
+     */
+    public long corruptSegments() {
+        return corruptSegments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != channel) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * @return the end of the envelope at the current offset, or -1 if there isn't a complete one
+     */
+    private int validate() {
+        segment.limit(segment.capacity()).position(offset);
+        if (segment.remaining() < ENVELOPE_HEADER_SIZE || segment.get(offset) != ARRAY32) {
+            return -1;
+        }
+        unpacker.wrap(segment);
+        try {
+            int count = unpacker.readEnvelopeHeader();
+            for (int i = 0; i < count; ++i) {
+                unpacker.skip();
+            }
+            return segment.position();
+        } catch (RuntimeException malformed) {
+            return -1;
+        }
+    }
+
+    private boolean map() {
+        if (null != channel) {
+            return true;
+        }
+        Path path = SpoolWriter.segment(directory, sequence);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            message = segment.duplicate();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Moves to the next segment if the writer has started one, which means
+     * nothing more will be written to the current segment.
+     */
+    private boolean next() {
+        if (!Files.exists(SpoolWriter.segment(directory, sequence + 1))) {
+            return false;
+        }
+        // the writer leaves a zero where it stopped, anything else is the start of a corrupt tail
+        segment.limit(segment.capacity()).position(offset);
+        if (segment.remaining() >= ENVELOPE_HEADER_SIZE && segment.get(offset) != 0) {
+            ++corruptSegments;
+        }
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ++sequence;
+        offset = 0;
+        return true;
+    }
+
+    private static long firstSequence(Path directory) throws IOException {
+        long first = 0;
+        boolean found = false;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SpoolWriter.SUFFIX)) {
+            for (Path segment : segments) {
+                long sequence = SpoolWriter.sequence(segment);
+                if (sequence >= 0) {
+                    first = found ? Math.min(first, sequence) : sequence;
+                    found = true;
+                }
+            }
+        }
+        return first;
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.richardstartin.messagepack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static io.github.richardstartin.messagepack.Format.ARRAY32;
+
+/**
+ * Spools envelopes to an append-only log of memory mapped segment files,
+ * which a {@link Packer} packs into directly without copying:
+ * <pre>{@code
+ *   SpoolWriter spool = new SpoolWriter(directory, 64 << 20, 1 << 20);
+ *   Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+ * }</pre>
+ * The packer is given successive regions of the current segment, and a new
+ * segment is started when the next region doesn't fit. On flush, the array
+ * header is rewritten in its widest form at the start of the region, marker
+ * byte last, so the envelopes in a segment are contiguous and an envelope
+ * which was never flushed, for instance because the process crashed, is
+ * where reading the segment stops. Segments are named by sequence number,
+ * and reopening a directory starts a new segment after the last one.
+ * Not thread-safe (use one per packer).
+ */
+public final class SpoolWriter implements Consumer<ByteBuffer>, Supplier<ByteBuffer>, AutoCloseable {
+
+    static final String SUFFIX = ".msgpack";
+    static final int ENVELOPE_HEADER_SIZE = 5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int regionSize;
+    private final Unpacker unpacker = new Unpacker();
+
+    private long sequence;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private ByteBuffer region;
+    private int offset;
+
+    /**
+     * @param segmentSize the size of each segment file
+     * @param regionSize the size of the buffer the packer packs into, which limits the size of envelopes
+     */
+    public SpoolWriter(Path directory, int segmentSize, int regionSize) throws IOException {
+        if (regionSize > segmentSize) {
+            throw new IllegalArgumentException("region size " + regionSize + " exceeds segment size " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.regionSize = regionSize;
+        this.sequence = lastSequence(directory);
+        roll();
+    }
+
+    @Override
+    public ByteBuffer get() {
+        if (segmentSize - offset < regionSize) {
+            roll();
+        }
+        // a message which didn't fit in the last region may have been partly written here
+        segment.put(offset, (byte) 0);
+        ByteBuffer duplicate = segment.duplicate();
+        duplicate.position(offset).limit(offset + regionSize);
+        region = duplicate.slice();
+        return region;
+    }
+
+    @Override
+    public void accept(ByteBuffer envelope) {
+        int count = unpacker.wrap(envelope.duplicate()).readEnvelopeHeader();
+        if (count == 0) {
+            // the region is given out again
+            return;
+        }
+        if (envelope == region) {
+            commit(region, count, envelope.limit());
+        } else {
+            // a message too big for a region was packed into a temporary buffer
+            append(envelope, count);
+        }
+    }
+
+    /**
+     * Forces the envelopes written to the current segment to storage, which
+     * is only needed to survive the operating system crashing.
+     */
+    public void sync() {
+        segment.force();
+    }
+
+    /**
+     * @return the sequence number of the segment being written
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the end of the last envelope in the segment being written
+     */
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment.force();
+        channel.close();
+    }
+
+    static Path segment(Path directory, long sequence) {
+        return directory.resolve(String.format("%020d%s", sequence, SUFFIX));
+    }
+
+    /**
+     * @return the sequence number of the segment, or -1 if it isn't named like one
+     */
+    static long sequence(Path segment) {
+        String name = segment.getFileName().toString();
+        int length = name.length() - SUFFIX.length();
+        if (length <= 0) {
+            return -1;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(name.substring(0, length));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void append(ByteBuffer envelope, int count) {
+        ByteBuffer body = envelope.duplicate();
+        body.position(ENVELOPE_HEADER_SIZE);
+        int length = ENVELOPE_HEADER_SIZE + body.remaining();
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("envelope of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        if (segmentSize - offset < length) {
+            roll();
+        }
+        ByteBuffer target = segment.duplicate();
+        target.position(offset + ENVELOPE_HEADER_SIZE);
+        target.put(body);
+        target.position(offset);
+        commit(target.slice(), count, length);
+    }
+
+    private void commit(ByteBuffer target, int count, int length) {
+        // the marker byte goes last so a torn header is never mistaken for an envelope
+        target.putInt(1, count);
+        target.put(0, ARRAY32);
+        offset += length;
+    }
+
+    private void roll() {
+        try {
+            if (null != channel) {
+                if (offset < segmentSize) {
+                    // mark where the segment ends, over anything partly written after the last envelope
+                    segment.put(offset, (byte) 0);
+                }
+                segment.force();
+                channel.close();
+            }
+            ++sequence;
+            channel = FileChannel.open(segment(directory, sequence),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            offset = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long lastSequence(Path directory) throws IOException {
+        long last = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path segment : segments) {
+                // anything else which happens to have the suffix is ignored
+                last = Math.max(last, sequence(segment));
+            }
+        }
+        return last;
+    }
+}
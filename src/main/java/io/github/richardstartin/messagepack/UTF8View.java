@@ -0,0 +1,195 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable view over UTF-8 bytes inside a buffer. Content equality and
+ * hash codes are consistent with {@link String}, so views can be used to
+ * look up {@code CharSequence} keyed maps without creating a string.
+ * A view is only valid until its bytes are overwritten or it is reset,
+ * so it must never be stored as a key (use {@link #toString()}).
+ */
+public final class UTF8View implements CharSequence {
+
+    private static final int UNKNOWN = -1;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    private int charLength = UNKNOWN;
+    private boolean ascii;
+    private char[] chars = new char[16];
+
+    private int hash;
+    private boolean hashed;
+
+    public UTF8View reset(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.charLength = UNKNOWN;
+        this.hashed = false;
+        return this;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the view in bytes
+     */
+    public int utf8Length() {
+        return length;
+    }
+
+    @Override
+    public int length() {
+        decode();
+        return charLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        decode();
+        if (index < 0 || index >= charLength) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return ascii ? (char) buffer.get(offset + index) : chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public int hashCode() {
+        if (!hashed) {
+            decode();
+            int h = 0;
+            if (ascii) {
+                for (int i = 0; i < length; ++i) {
+                    h = 31 * h + buffer.get(offset + i);
+                }
+            } else {
+                for (int i = 0; i < charLength; ++i) {
+                    h = 31 * h + chars[i];
+                }
+            }
+            hash = h;
+            hashed = true;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof UTF8View) {
+            UTF8View that = (UTF8View) o;
+            if (length != that.length) {
+                return false;
+            }
+            for (int i = 0; i < length; ++i) {
+                if (buffer.get(offset + i) != that.buffer.get(that.offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (o instanceof CharSequence) {
+            CharSequence that = (CharSequence) o;
+            // a string can't have more chars than its encoding has bytes
+            if (that.length() > length) {
+                return false;
+            }
+            decode();
+            if (that.length() != charLength) {
+                return false;
+            }
+            if (ascii) {
+                for (int i = 0; i < charLength; ++i) {
+                    if (buffer.get(offset + i) != that.charAt(i)) {
+                        return false;
+                    }
+                }
+            } else {
+                for (int i = 0; i < charLength; ++i) {
+                    if (chars[i] != that.charAt(i)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] utf8 = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private void decode() {
+        if (charLength != UNKNOWN) {
+            return;
+        }
+        int i = 0;
+        while (i < length && buffer.get(offset + i) >= 0) {
+            ++i;
+        }
+        if (i == length) {
+            ascii = true;
+            charLength = length;
+            return;
+        }
+        ascii = false;
+        if (chars.length < length) {
+            chars = new char[Integer.highestOneBit(length) << 1];
+        }
+        for (int j = 0; j < i; ++j) {
+            chars[j] = (char) buffer.get(offset + j);
+        }
+        int out = i;
+        while (i < length) {
+            int b = buffer.get(offset + i++) & 0xFF;
+            if (b < 0x80) {
+                chars[out++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0 && i < length) {
+                chars[out++] = (char) (((b & 0x1F) << 6) | (buffer.get(offset + i++) & 0x3F));
+            } else if ((b & 0xF0) == 0xE0 && i + 1 < length) {
+                chars[out++] = (char) (((b & 0x0F) << 12)
+                        | ((buffer.get(offset + i) & 0x3F) << 6)
+                        | (buffer.get(offset + i + 1) & 0x3F));
+                i += 2;
+            } else if ((b & 0xF8) == 0xF0 && i + 2 < length) {
+                int codePoint = ((b & 0x07) << 18)
+                        | ((buffer.get(offset + i) & 0x3F) << 12)
+                        | ((buffer.get(offset + i + 1) & 0x3F) << 6)
+                        | (buffer.get(offset + i + 2) & 0x3F);
+                chars[out++] = Character.highSurrogate(codePoint);
+                chars[out++] = Character.lowSurrogate(codePoint);
+                i += 3;
+            } else {
+                chars[out++] = '\uFFFD';
+            }
+        }
+        charLength = out;
+    }
+}
@@ -0,0 +1,6 @@
+package io.github.richardstartin.messagepack;
+
+@FunctionalInterface
+public interface Unmapper<T> {
+    void unmap(T target, Unpacker unpacker);
+}
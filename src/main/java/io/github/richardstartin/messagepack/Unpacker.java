@@ -0,0 +1,433 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static io.github.richardstartin.messagepack.Format.*;
+
+/**
+ * Reads messagepack straight out of a heap or direct buffer without
+ * allocating per value. Not thread-safe (use one per thread).
+ */
+public class Unpacker implements Deserialiser {
+
+    private ByteBuffer buffer;
+
+    private byte[] utf8Buffer = new byte[64];
+    private final UTF8View view = new UTF8View();
+
+    public Unpacker(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public Unpacker() {
+        this(ByteBuffer.allocate(0));
+    }
+
+    /**
+     * Starts reading from the position of another buffer, so the unpacker can be reused.
+     */
+    public Unpacker wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+
+    @Override
+    public <T> int deserialise(ByteBuffer envelope, T target, Unmapper<T> unmapper) {
+        wrap(envelope);
+        int count = readEnvelopeHeader();
+        for (int i = 0; i < count; ++i) {
+            unmapper.unmap(target, this);
+        }
+        return count;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Reads the header written by {@link Packer#flush()}.
+     * @return the number of messages in the envelope
+     */
+    public int readEnvelopeHeader() {
+        return readArrayHeader();
+    }
+
+    public ValueType peekType() {
+        return ValueType.of(buffer.get(buffer.position()));
+    }
+
+    public boolean tryReadNull() {
+        int position = buffer.position();
+        if (buffer.get(position) == NULL) {
+            buffer.position(position + 1);
+            return true;
+        }
+        return false;
+    }
+
+    public void readNull() {
+        byte format = buffer.get();
+        if (format != NULL) {
+            throw unexpected("nil", format);
+        }
+    }
+
+    public boolean readBoolean() {
+        byte format = buffer.get();
+        switch (format) {
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                throw unexpected("boolean", format);
+        }
+    }
+
+    public int readInt() {
+        byte format = buffer.get();
+        if (format >= -32) {
+            // positive and negative fixnums
+            return format;
+        }
+        switch (format) {
+            case UINT8:
+                return buffer.get() & 0xFF;
+            case UINT16:
+                return buffer.getChar();
+            case UINT32: {
+                int value = buffer.getInt();
+                if (value < 0) {
+                    throw overflow("int", value & 0xFFFFFFFFL);
+                }
+                return value;
+            }
+            case UINT64: {
+                long value = buffer.getLong();
+                if (value < 0 || value > Integer.MAX_VALUE) {
+                    throw overflow("int", value);
+                }
+                return (int) value;
+            }
+            case INT8:
+                return buffer.get();
+            case INT16:
+                return buffer.getShort();
+            case INT32:
+                return buffer.getInt();
+            case INT64: {
+                long value = buffer.getLong();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw overflow("int", value);
+                }
+                return (int) value;
+            }
+            default:
+                throw unexpected("int", format);
+        }
+    }
+
+    public long readLong() {
+        byte format = buffer.get();
+        if (format >= -32) {
+            return format;
+        }
+        switch (format) {
+            case UINT8:
+                return buffer.get() & 0xFF;
+            case UINT16:
+                return buffer.getChar();
+            case UINT32:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            case UINT64: {
+                long value = buffer.getLong();
+                if (value < 0) {
+                    throw overflow("long", value);
+                }
+                return value;
+            }
+            case INT8:
+                return buffer.get();
+            case INT16:
+                return buffer.getShort();
+            case INT32:
+                return buffer.getInt();
+            case INT64:
+                return buffer.getLong();
+            default:
+                throw unexpected("long", format);
+        }
+    }
+
+    public float readFloat() {
+        byte format = buffer.get();
+        switch (format) {
+            case FLOAT32:
+                return buffer.getFloat();
+            case FLOAT64:
+                return (float) buffer.getDouble();
+            default:
+                throw unexpected("float", format);
+        }
+    }
+
+    public double readDouble() {
+        byte format = buffer.get();
+        switch (format) {
+            case FLOAT64:
+                return buffer.getDouble();
+            case FLOAT32:
+                return buffer.getFloat();
+            default:
+                throw unexpected("double", format);
+        }
+    }
+
+    public int readArrayHeader() {
+        byte format = buffer.get();
+        if ((format & 0xF0) == FIXARRAY) {
+            return format & 0x0F;
+        }
+        switch (format) {
+            case ARRAY16:
+                return buffer.getChar();
+            case ARRAY32:
+                return length(buffer.getInt());
+            default:
+                throw unexpected("array", format);
+        }
+    }
+
+    public int readMapHeader() {
+        byte format = buffer.get();
+        if ((format & 0xF0) == FIXMAP) {
+            return format & 0x0F;
+        }
+        switch (format) {
+            case MAP16:
+                return buffer.getChar();
+            case MAP32:
+                return length(buffer.getInt());
+            default:
+                throw unexpected("map", format);
+        }
+    }
+
+    /**
+     * @return the length in bytes of the UTF-8 string which follows
+     */
+    public int readStringHeader() {
+        byte format = buffer.get();
+        if ((format & 0xE0) == FIXSTR) {
+            return format & 0x1F;
+        }
+        switch (format) {
+            case STR8:
+                return buffer.get() & 0xFF;
+            case STR16:
+                return buffer.getChar();
+            case STR32:
+                return length(buffer.getInt());
+            default:
+                throw unexpected("string", format);
+        }
+    }
+
+    public int readBinaryHeader() {
+        byte format = buffer.get();
+        switch (format) {
+            case BIN8:
+                return buffer.get() & 0xFF;
+            case BIN16:
+                return buffer.getChar();
+            case BIN32:
+                return length(buffer.getInt());
+            default:
+                throw unexpected("binary", format);
+        }
+    }
+
+    /**
+     * Allocates a new string every time, prefer {@link #readStringView()}
+     * when the string is only compared, hashed or looked up.
+     */
+    public String readString() {
+        int length = readStringHeader();
+        if (buffer.hasArray()) {
+            int position = buffer.position();
+            String s = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            buffer.position(position + length);
+            return s;
+        }
+        if (utf8Buffer.length < length) {
+            utf8Buffer = new byte[Integer.highestOneBit(length) << 1];
+        }
+        buffer.get(utf8Buffer, 0, length);
+        return new String(utf8Buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public String readString(DecodingCache decodingCache) {
+        int length = readStringHeader();
+        int position = buffer.position();
+        String s = decodingCache.decode(buffer, position, length);
+        buffer.position(position + length);
+        return s;
+    }
+
+    /**
+     * Reads the next string without decoding or allocating it.
+     * @return a view which is overwritten by the next call
+     */
+    public UTF8View readStringView() {
+        return readStringView(view);
+    }
+
+    public UTF8View readStringView(UTF8View view) {
+        int length = readStringHeader();
+        int position = buffer.position();
+        view.reset(buffer, position, length);
+        buffer.position(position + length);
+        return view;
+    }
+
+    /**
+     * Copies the next binary value into the target buffer.
+     * @return the number of bytes copied
+     */
+    public int readBinary(ByteBuffer target) {
+        int length = readBinaryHeader();
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        target.put(buffer);
+        buffer.limit(limit);
+        return length;
+    }
+
+    /**
+     * Skips the next value, including everything nested inside it.
+     */
+    public void skip() {
+        long remaining = 1;
+        do {
+            remaining += skipValue() - 1;
+        } while (remaining > 0);
+    }
+
+    public void skipBytes(int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * @return the number of nested values which must also be skipped
+     */
+    private long skipValue() {
+        byte format = buffer.get();
+        if (format >= -32) {
+            return 0;
+        }
+        if ((format & 0xE0) == FIXSTR) {
+            skipBytes(format & 0x1F);
+            return 0;
+        }
+        if ((format & 0xF0) == FIXARRAY) {
+            return format & 0x0F;
+        }
+        if ((format & 0xF0) == FIXMAP) {
+            return (format & 0x0F) * 2;
+        }
+        switch (format) {
+            case NULL:
+            case FALSE:
+            case TRUE:
+                return 0;
+            case UINT8:
+            case INT8:
+                skipBytes(1);
+                return 0;
+            case UINT16:
+            case INT16:
+            case FIXEXT1:
+                skipBytes(2);
+                return 0;
+            case FIXEXT2:
+                skipBytes(3);
+                return 0;
+            case UINT32:
+            case INT32:
+            case FLOAT32:
+                skipBytes(4);
+                return 0;
+            case FIXEXT4:
+                skipBytes(5);
+                return 0;
+            case UINT64:
+            case INT64:
+            case FLOAT64:
+                skipBytes(8);
+                return 0;
+            case FIXEXT8:
+                skipBytes(9);
+                return 0;
+            case FIXEXT16:
+                skipBytes(17);
+                return 0;
+            case STR8:
+            case BIN8:
+                skipBytes(buffer.get() & 0xFF);
+                return 0;
+            case STR16:
+            case BIN16:
+                skipBytes(buffer.getChar());
+                return 0;
+            case STR32:
+            case BIN32:
+                skipBytes(length(buffer.getInt()));
+                return 0;
+            case EXT8:
+                skipBytes((buffer.get() & 0xFF) + 1);
+                return 0;
+            case EXT16:
+                skipBytes(buffer.getChar() + 1);
+                return 0;
+            case EXT32:
+                skipBytes(length(buffer.getInt()) + 1);
+                return 0;
+            case ARRAY16:
+                return buffer.getChar();
+            case ARRAY32:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            case MAP16:
+                return buffer.getChar() * 2L;
+            case MAP32:
+                return (buffer.getInt() & 0xFFFFFFFFL) * 2;
+            default:
+                throw unexpected("value", format);
+        }
+    }
+
+    private static int length(int length) {
+        if (length < 0) {
+            throw overflow("length", length & 0xFFFFFFFFL);
+        }
+        return length;
+    }
+
+    private static IllegalStateException unexpected(String expected, byte format) {
+        return new IllegalStateException("expected " + expected + " but got format 0x"
+                + Integer.toHexString(format & 0xFF));
+    }
+
+    private static IllegalStateException overflow(String type, long value) {
+        return new IllegalStateException(value + " does not fit in " + type);
+    }
+}
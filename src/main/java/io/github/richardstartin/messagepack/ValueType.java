@@ -0,0 +1,87 @@
+package io.github.richardstartin.messagepack;
+
+import static io.github.richardstartin.messagepack.Format.*;
+
+public enum ValueType {
+    NULL,
+    BOOLEAN,
+    INTEGER,
+    FLOAT,
+    STRING,
+    BINARY,
+    ARRAY,
+    MAP,
+    EXTENSION,
+    NEVER_USED;
+
+    private static final ValueType[] TYPES = new ValueType[256];
+
+    static {
+        for (int i = 0; i < 256; ++i) {
+            TYPES[i] = compute((byte) i);
+        }
+    }
+
+    static ValueType of(byte format) {
+        return TYPES[format & 0xFF];
+    }
+
+    private static ValueType compute(byte format) {
+        if (format >= -32) {
+            return INTEGER;
+        }
+        if ((format & 0xE0) == FIXSTR) {
+            return STRING;
+        }
+        if ((format & 0xF0) == FIXARRAY) {
+            return ARRAY;
+        }
+        if ((format & 0xF0) == FIXMAP) {
+            return MAP;
+        }
+        switch (format) {
+            case Format.NULL:
+                return NULL;
+            case FALSE:
+            case TRUE:
+                return BOOLEAN;
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case UINT64:
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+                return INTEGER;
+            case FLOAT32:
+            case FLOAT64:
+                return FLOAT;
+            case STR8:
+            case STR16:
+            case STR32:
+                return STRING;
+            case BIN8:
+            case BIN16:
+            case BIN32:
+                return BINARY;
+            case ARRAY16:
+            case ARRAY32:
+                return ARRAY;
+            case MAP16:
+            case MAP32:
+                return MAP;
+            case FIXEXT1:
+            case FIXEXT2:
+            case FIXEXT4:
+            case FIXEXT8:
+            case FIXEXT16:
+            case EXT8:
+            case EXT16:
+            case EXT32:
+                return EXTENSION;
+            default:
+                return NEVER_USED;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.richardstartin.messagepack;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
 
 public interface Writable {
@@ -40,4 +41,28 @@ public interface Writable {
     void writeFloat(float value);
 
     void writeDouble(double value);
+
+    void writeRaw(PackedFragment fragment);
+
+    void writeMapHeader(int length);
+
+    <T> void writeCollection(Collection<? extends T> collection, Class<T> elementType, EncodingCache encodingCache);
+
+    default <T> void writeCollection(Collection<? extends T> collection, Class<T> elementType) {
+        writeCollection(collection, elementType, EncodingCachingStrategies.none());
+    }
+
+    void writeInts(int[] values);
+
+    void writeLongs(long[] values);
+
+    void writeLongs(LongList values);
+
+    void writeDoubles(DoubleList values);
+
+    void writeMap(DoubleValuedMap<? extends CharSequence> map, EncodingCache encodingCache);
+
+    default void writeMap(DoubleValuedMap<? extends CharSequence> map) {
+        writeMap(map, EncodingCachingStrategies.none());
+    }
 }
@@ -0,0 +1,245 @@
+package io.github.richardstartin.messagepack.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates a {@code GeneratedWriter} for each {@code @Packable} class at
+ * compile time, and lists them in {@code META-INF/services} so every
+ * {@code Codec} registers them. Field names are baked into the writer as
+ * UTF-8 constants, and fields are read directly or through their accessors,
+ * so nothing is inspected at runtime.
+ * <p>
+ * Classes which can't be written from the same package, because they or a
+ * field without an accessor are private, are skipped with a note and left
+ * to the {@code FieldWriter} at runtime.
+ */
+public final class PackableProcessor extends AbstractProcessor {
+
+    private static final String PACKAGE = "io.github.richardstartin.messagepack";
+    private static final String PACKABLE = PACKAGE + ".Packable";
+    private static final String SERVICES = "META-INF/services/" + PACKAGE + ".GeneratedWriter";
+
+    private final Set<String> generated = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(PACKABLE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServices();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                List<String[]> fields = new ArrayList<>();
+                String reason = accessors(type, packageOf(type), fields);
+                if (null != reason) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            type + " will be written by FieldWriter at runtime: " + reason, type);
+                } else {
+                    generate(type, fields);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the name, kind and accessor expression of each field, superclass fields first.
+     * Like {@code FieldWriter}, a superclass field hidden by a field of the same name is left
+     * out, which is also the field {@code value.name} refers to.
+     *
+     * @return why the type can't be generated, or null if it can
+     */
+    private String accessors(TypeElement type, String pkg, List<String[]> fields) {
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            return "it is private";
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                && type.getKind() == ElementKind.CLASS) {
+            return "it is an inner class";
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            return "it is a local class";
+        }
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement parent = (TypeElement) ((DeclaredType) superclass).asElement();
+            if (!parent.getQualifiedName().contentEquals("java.lang.Object")) {
+                String reason = accessors(parent, pkg, fields);
+                if (null != reason) {
+                    return reason;
+                }
+            }
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            String accessor = null;
+            if (accessible(field, pkg)) {
+                accessor = "value." + name;
+            } else {
+                ExecutableElement method = accessor(type, pkg, field);
+                if (null != method) {
+                    accessor = "value." + method.getSimpleName() + "()";
+                }
+            }
+            if (null == accessor) {
+                return "field " + name + " is private and has no accessor";
+            }
+            fields.removeIf(hidden -> hidden[0].equals(name));
+            fields.add(new String[] {name, kind(field.asType()), accessor});
+        }
+        return null;
+    }
+
+    private ExecutableElement accessor(TypeElement type, String pkg, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String capitalised = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String methodName = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty()
+                    && accessible(method, pkg)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())
+                    && (methodName.equals(name) || methodName.equals("get" + capitalised) || methodName.equals("is" + capitalised))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private boolean accessible(Element member, String pkg) {
+        Set<Modifier> modifiers = member.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC)
+                || !modifiers.contains(Modifier.PRIVATE) && pkg.equals(packageOf(member));
+    }
+
+    private String kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+            case SHORT:
+            case BYTE:
+            case CHAR:
+                return "Int";
+            case LONG:
+                return "Long";
+            case DOUBLE:
+                return "Double";
+            case FLOAT:
+                return "Float";
+            case BOOLEAN:
+                return "Boolean";
+            default:
+                TypeMirror charSequence = processingEnv.getElementUtils().getTypeElement("java.lang.CharSequence").asType();
+                return processingEnv.getTypeUtils().isAssignable(type, charSequence) ? "String" : "Object";
+        }
+    }
+
+    private void generate(TypeElement type, List<String[]> fields) {
+        String pkg = packageOf(type);
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = typeName.substring(pkg.isEmpty() ? 0 : pkg.length() + 1).replace('.', '_') + "_PackableWriter";
+        String qualifiedName = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+        StringBuilder source = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            source.append("package ").append(pkg).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(simpleName)
+                .append(" implements ").append(PACKAGE).append(".GeneratedWriter<").append(typeName).append("> {\n\n");
+        for (String[] field : fields) {
+            source.append("    private static final byte[] ").append(constant(field[0])).append(" = {");
+            byte[] utf8 = field[0].getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < utf8.length; ++i) {
+                source.append(i == 0 ? "" : ", ").append(utf8[i]);
+            }
+            source.append("};\n");
+        }
+        source.append("\n    @Override\n    public Class<").append(typeName).append("> type() {\n")
+                .append("        return ").append(typeName).append(".class;\n    }\n\n")
+                .append("    @Override\n    public void write(").append(typeName)
+                .append(" value, ").append(PACKAGE).append(".Packer packer, ")
+                .append(PACKAGE).append(".EncodingCache encodingCache) {\n")
+                .append("        writeFields(value, packer, encodingCache);\n    }\n\n")
+                .append("    @Override\n    public void map(").append(typeName).append(" value, ")
+                .append(PACKAGE).append(".Writable writable) {\n")
+                .append("        writeFields(value, writable, ").append(PACKAGE).append(".EncodingCachingStrategies.none());\n    }\n\n")
+                .append("    private static void writeFields(").append(typeName)
+                .append(" value, ").append(PACKAGE).append(".Writable writable, ")
+                .append(PACKAGE).append(".EncodingCache encodingCache) {\n")
+                .append("        writable.writeMapHeader(").append(fields.size()).append(");\n");
+        for (String[] field : fields) {
+            String constant = constant(field[0]);
+            source.append("        writable.writeUTF8(").append(constant).append(", 0, ").append(constant).append(".length);\n");
+            switch (field[1]) {
+                case "String":
+                    source.append("        writable.writeString(").append(field[2]).append(", encodingCache);\n");
+                    break;
+                case "Object":
+                    source.append("        writable.writeObject(").append(field[2]).append(", encodingCache);\n");
+                    break;
+                default:
+                    source.append("        writable.write").append(field[1]).append("(").append(field[2]).append(");\n");
+            }
+        }
+        source.append("    }\n}\n");
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        generated.add(qualifiedName);
+    }
+
+    private void writeServices() {
+        if (generated.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject services = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            try (Writer writer = services.openWriter()) {
+                for (String name : generated) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+
+    private static String constant(String field) {
+        return "KEY_" + field;
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class AsyncSinkTest {
+
+    @Test
+    public void testMessagesArriveInOrder() throws InterruptedException {
+        List<Long> received = new ArrayList<>();
+        Unpacker unpacker = new Unpacker();
+        AsyncSink sink = new AsyncSink(buffy -> {
+            int count = unpacker.wrap(buffy).readEnvelopeHeader();
+            for (int i = 0; i < count; ++i) {
+                received.add(unpacker.readLong());
+            }
+        }, 2, 64, AsyncSink.Backpressure.BLOCK);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        for (long i = 0; i < 10_000; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        packer.flush();
+        sink.close();
+        assertEquals(10_000, received.size());
+        for (int i = 0; i < received.size(); ++i) {
+            assertEquals(i, received.get(i).longValue());
+        }
+        assertEquals(0, sink.droppedMessages());
+    }
+
+    @Test
+    public void testDropWhenSinkIsSlow() throws InterruptedException {
+        CountDownLatch stalled = new CountDownLatch(1);
+        AsyncSink sink = new AsyncSink(buffy -> {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, 64, AsyncSink.Backpressure.DROP);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        for (int i = 0; i < 1000; ++i) {
+            packer.serialise(i, (x, w) -> w.writeInt(x));
+            packer.flush();
+        }
+        assertEquals(0, sink.blocked());
+        assertEquals(999, sink.droppedBuffers());
+        assertEquals(999, sink.droppedMessages());
+        stalled.countDown();
+        sink.close();
+        assertEquals(1, sink.sent());
+    }
+
+    @Test
+    public void testCloseWhenInterrupted() {
+        CountDownLatch stalled = new CountDownLatch(1);
+        AsyncSink sink = new AsyncSink(buffy -> {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, 64, AsyncSink.Backpressure.BLOCK);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        packer.flush();
+        Thread.currentThread().interrupt();
+        sink.close();
+        assertTrue(Thread.interrupted());
+        stalled.countDown();
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testPackerHandsOverPooledBuffers() {
+        BufferPool pool = new BufferPool(3, 64, true);
+        List<ByteBuffer> flushed = new ArrayList<>();
+        Packer packer = new Packer(Codec.INSTANCE, flushed::add, pool);
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        packer.flush();
+        assertEquals(1, flushed.size());
+        ByteBuffer first = flushed.get(0);
+        assertTrue(first.isDirect());
+        assertEquals(64, first.capacity());
+        assertEquals(1, new Unpacker(first.duplicate()).readEnvelopeHeader());
+        // the flushed buffer isn't reused until it's released
+        packer.serialise(2, (x, w) -> w.writeInt(x));
+        packer.flush();
+        assertNotSame(first, flushed.get(1));
+        assertEquals(0, pool.available());
+        pool.release(first);
+        packer.serialise(3, (x, w) -> w.writeInt(x));
+        packer.flush();
+        pool.release(flushed.get(1));
+        packer.serialise(4, (x, w) -> w.writeInt(x));
+        packer.flush();
+        assertSame(first, flushed.get(3));
+        assertEquals(5, pool.acquired());
+        assertEquals(0, pool.exhausted());
+    }
+
+    @Test
+    public void testOversizedMessagesDontLeakBuffers() {
+        BufferPool pool = new BufferPool(3, 64);
+        List<ByteBuffer> flushed = new ArrayList<>();
+        Packer packer = new Packer(Codec.INSTANCE, buffer -> {
+            flushed.add(buffer);
+            pool.release(buffer);
+        }, pool, 1024);
+        long[] large = new long[50];
+        Arrays.fill(large, Long.MAX_VALUE);
+        for (int i = 0; i < 10; ++i) {
+            packer.serialise(large, (x, w) -> w.writeObject(x, EncodingCachingStrategies.none()));
+            packer.flush();
+            // one buffer is held by the packer, the rest are back in the pool
+            assertEquals(2, pool.available());
+        }
+        assertEquals(10, flushed.size());
+        assertEquals(10, pool.foreign());
+        assertEquals(0, pool.exhausted());
+        for (ByteBuffer buffer : flushed) {
+            Unpacker unpacker = new Unpacker(buffer.duplicate());
+            assertEquals(1, unpacker.readEnvelopeHeader());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseTwice() {
+        BufferPool pool = new BufferPool(2, 64);
+        ByteBuffer buffer = pool.acquire();
+        pool.release(buffer);
+        pool.release(buffer);
+    }
+
+    @Test
+    public void testForeignBuffersIgnored() {
+        BufferPool pool = new BufferPool(1, 64);
+        pool.release(ByteBuffer.allocate(64));
+        assertEquals(1, pool.available());
+        assertEquals(1, pool.foreign());
+    }
+
+    @Test
+    public void testExhaustion() {
+        BufferPool pool = new BufferPool(1, 64);
+        assertNotNull(pool.tryAcquire());
+        assertNull(pool.tryAcquire());
+        assertEquals(1, pool.exhausted());
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class ChannelSinkTest {
+
+    @Test
+    public void testBatchedWritesToFile() throws IOException {
+        Path file = Files.createTempFile("messagepack", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            BufferPool pool = new BufferPool(4, 64);
+            ChannelSink sink = new ChannelSink(channel, pool, 3);
+            Packer packer = new Packer(Codec.INSTANCE, sink, pool);
+            for (long i = 0; i < 1000; ++i) {
+                packer.serialise(i, (x, w) -> w.writeLong(x));
+            }
+            packer.flush();
+            sink.flush();
+            // the packer holds on to one buffer
+            assertEquals(3, pool.available());
+            assertEquals(channel.size(), sink.bytes());
+            byte[] written = Files.readAllBytes(file);
+            assertEquals(1000, readLongs(written));
+            assertTrue(sink.writes() < envelopes(written));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPartialWrites() throws IOException {
+        TrickleChannel channel = new TrickleChannel();
+        Packer packer = new Packer(new ChannelSink(channel), ByteBuffer.allocate(64));
+        for (long i = 0; i < 1000; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        packer.flush();
+        assertEquals(1000, readLongs(channel.output.toByteArray()));
+    }
+
+    private static int readLongs(byte[] bytes) throws IOException {
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes);
+        int expected = 0;
+        while (unpacker.hasNext()) {
+            int count = unpacker.unpackArrayHeader();
+            for (int i = 0; i < count; ++i) {
+                assertEquals(expected++, unpacker.unpackLong());
+            }
+        }
+        return expected;
+    }
+
+    private static int envelopes(byte[] bytes) throws IOException {
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes);
+        int envelopes = 0;
+        while (unpacker.hasNext()) {
+            unpacker.skipValue();
+            ++envelopes;
+        }
+        return envelopes;
+    }
+
+    @Test
+    public void testFailedWriteReleasesEnvelopes() throws IOException {
+        FailingChannel channel = new FailingChannel();
+        BufferPool pool = new BufferPool(3, 64);
+        ChannelSink sink = new ChannelSink(channel, pool, 2);
+        Packer packer = new Packer(Codec.INSTANCE, sink, pool);
+        packer.serialise(1L, (x, w) -> w.writeLong(x));
+        packer.flush();
+        packer.serialise(2L, (x, w) -> w.writeLong(x));
+        try {
+            packer.flush();
+            fail("expected the channel's exception");
+        } catch (UncheckedIOException expected) {
+        }
+        // both envelopes went back to the pool and the packer took a fresh buffer
+        assertEquals(2, pool.available());
+        channel.failing = false;
+        for (long i = 0; i < 100; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        packer.flush();
+        sink.flush();
+        assertEquals(100, readLongs(channel.output.toByteArray()));
+        assertEquals(2, pool.available());
+    }
+
+    private static class FailingChannel implements WritableByteChannel {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean failing = true;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failing) {
+                throw new IOException("connection reset");
+            }
+            int written = src.remaining();
+            while (src.hasRemaining()) {
+                output.write(src.get());
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class TrickleChannel implements GatheringByteChannel {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            for (int i = offset; i < offset + length; ++i) {
+                if (srcs[i].hasRemaining()) {
+                    return write(srcs[i]);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int written = Math.min(3, src.remaining());
+            for (int i = 0; i < written; ++i) {
+                output.write(src.get());
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CompletionSinkTest {
+
+    @Test
+    public void testBuffersRecycledOnCompletion() throws InterruptedException {
+        ExecutorService io = Executors.newSingleThreadExecutor();
+        AtomicLong sum = new AtomicLong();
+        BufferPool pool = new BufferPool(3, 64);
+        CompletionSink sink = new CompletionSink(buffer -> CompletableFuture.runAsync(() -> {
+            Unpacker unpacker = new Unpacker(buffer);
+            int count = unpacker.readEnvelopeHeader();
+            for (int i = 0; i < count; ++i) {
+                sum.addAndGet(unpacker.readLong());
+            }
+        }, io), pool);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        long expected = 0;
+        for (long i = 0; i < 10_000; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+            expected += i;
+        }
+        packer.flush();
+        io.shutdown();
+        assertTrue(io.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(expected, sum.get());
+        assertEquals(0, sink.inFlight());
+        assertEquals(0, sink.failed());
+        // the packer holds on to one buffer
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    public void testFailedWritesReleaseBuffers() {
+        BufferPool pool = new BufferPool(2, 64);
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new IllegalStateException());
+        CompletionSink sink = new CompletionSink(buffer -> failure, pool);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        for (int i = 0; i < 100; ++i) {
+            packer.serialise(i, (x, w) -> w.writeInt(x));
+            packer.flush();
+        }
+        assertEquals(100, sink.failed());
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void testWriterThrowing() {
+        BufferPool pool = new BufferPool(3, 64);
+        boolean[] fail = {true};
+        long[] sum = new long[1];
+        CompletionSink sink = new CompletionSink(buffer -> {
+            if (fail[0]) {
+                throw new IllegalStateException("write failed");
+            }
+            Unpacker unpacker = new Unpacker(buffer);
+            int count = unpacker.readEnvelopeHeader();
+            for (int i = 0; i < count; ++i) {
+                sum[0] += unpacker.readLong();
+            }
+            return CompletableFuture.completedFuture(null);
+        }, pool);
+        Packer packer = new Packer(Codec.INSTANCE, sink, sink);
+        packer.serialise(1L, (x, w) -> w.writeLong(x));
+        try {
+            packer.flush();
+            fail("expected the writer's exception");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(1, sink.failed());
+        // the failed buffer went back to the pool and the packer took a fresh one
+        assertEquals(2, pool.available());
+        ByteBuffer other = pool.acquire();
+        fail[0] = false;
+        packer.serialise(2L, (x, w) -> w.writeLong(x));
+        packer.flush();
+        assertEquals(2, sum[0]);
+        assertEquals(0, other.position());
+        pool.release(other);
+        assertEquals(2, pool.available());
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+public class CompressingSinkTest {
+
+    @Test
+    public void testRoundTripHeap() {
+        roundTrip(false);
+    }
+
+    @Test
+    public void testRoundTripDirect() {
+        roundTrip(true);
+    }
+
+    private static void roundTrip(boolean direct) {
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("service", "checkout");
+        tags.put("region", "eu-west-1");
+        Inflater inflater = new Inflater();
+        ByteBuffer inflated = ByteBuffer.allocate(8192);
+        Unpacker unpacker = new Unpacker();
+        int[] received = new int[1];
+        CompressingSink sink = new CompressingSink(new DeflateCompressor(), compressed -> {
+            inflater.reset();
+            inflater.setInput(compressed);
+            inflated.clear();
+            try {
+                while (!inflater.finished()) {
+                    inflater.inflate(inflated);
+                }
+            } catch (DataFormatException e) {
+                fail(e.getMessage());
+            }
+            inflated.flip();
+            int count = unpacker.wrap(inflated).readEnvelopeHeader();
+            for (int i = 0; i < count; ++i) {
+                assertEquals(received[0]++, unpacker.readInt());
+                assertEquals(2, unpacker.readMapHeader());
+                unpacker.skip();
+                unpacker.skip();
+                unpacker.skip();
+                unpacker.skip();
+            }
+            assertFalse(inflated.hasRemaining());
+        }, 4096, direct);
+        Packer packer = new Packer(sink, direct ? ByteBuffer.allocateDirect(4096) : ByteBuffer.allocate(4096));
+        for (int i = 0; i < 10_000; ++i) {
+            packer.serialise(i, (x, w) -> {
+                w.writeInt(x);
+                w.writeMap(tags);
+            });
+        }
+        packer.flush();
+        assertEquals(10_000, received[0]);
+        assertTrue(sink.flushes() > 1);
+        assertTrue(sink.compressionRatio() > 2);
+        assertTrue(sink.nanosPerFlush() > 0);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentEncodingCacheTest {
+
+    private static byte[] encode(CharSequence s) {
+        return s.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testHitsForEquivalentCharSequences() {
+        ConcurrentEncodingCache cache = EncodingCachingStrategies.concurrent(16, ConcurrentEncodingCacheTest::encode);
+        byte[] first = cache.encode("foo");
+        assertSame(first, cache.encode("foo"));
+        assertSame(first, cache.encode(new StringBuilder("foo")));
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.size());
+        assertEquals(2D / 3, cache.hitRate(), 0.0001);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        ConcurrentEncodingCache cache = EncodingCachingStrategies.concurrent(16, ConcurrentEncodingCacheTest::encode);
+        for (int i = 0; i < 1000; ++i) {
+            assertArrayEquals(encode("value-" + i), cache.encode("value-" + i));
+        }
+        assertEquals(16, cache.capacity());
+        assertTrue(cache.size() <= 16);
+        assertEquals(1000, cache.misses());
+        assertEquals(1000 - cache.size(), cache.evictions());
+    }
+
+    @Test
+    public void testRecentlyReferencedEntriesSurvive() {
+        ConcurrentEncodingCache cache = EncodingCachingStrategies.concurrent(2, ConcurrentEncodingCacheTest::encode);
+        byte[] hot = cache.encode("hot");
+        cache.encode("cold");
+        for (int i = 0; i < 100; ++i) {
+            assertSame(hot, cache.encode("hot"));
+            cache.encode("other-" + i);
+        }
+        assertEquals(100, cache.hits());
+    }
+
+    @Test
+    public void testSharedBetweenPackers() throws Exception {
+        ConcurrentEncodingCache cache = EncodingCachingStrategies.concurrent(64, ConcurrentEncodingCacheTest::encode);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                futures.add(executor.submit(() -> {
+                    Unpacker unpacker = new Unpacker();
+                    Packer packer = new Packer(buffy -> unpacker.deserialise(buffy, null, (x, u) -> {
+                        int i = u.readInt();
+                        assertEquals("key-" + (i % 100), u.readString());
+                    }), ByteBuffer.allocate(1024));
+                    for (int i = 0; i < 10_000; ++i) {
+                        packer.serialise(i, (x, w) -> {
+                            w.writeInt(x);
+                            w.writeString("key-" + (x % 100), cache);
+                        });
+                    }
+                    packer.flush();
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.size() <= cache.capacity());
+        // messages which overflow the buffer are written twice
+        assertTrue(cache.hits() + cache.misses() >= 40_000);
+    }
+}
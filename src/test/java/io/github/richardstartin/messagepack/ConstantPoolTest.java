@@ -0,0 +1,95 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConstantPoolTest {
+
+    private static final class OpaqueCharSequence implements CharSequence {
+
+        private final String delegate;
+
+        OpaqueCharSequence(String delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int length() {
+            return delegate.length();
+        }
+
+        @Override
+        public char charAt(int i) {
+            return delegate.charAt(i);
+        }
+
+        @Override
+        public CharSequence subSequence(int i, int i1) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testSameHitsForAllCharSequences() {
+        Map<String, byte[]> constants = new HashMap<>();
+        for (int i = 0; i < 100; ++i) {
+            String key = "key-" + i + "-ß";
+            constants.put(key, key.getBytes(StandardCharsets.UTF_8));
+        }
+        ConstantPool pool = EncodingCachingStrategies.openAddressedConstantPool(constants);
+        assertEquals(constants.size(), pool.size());
+        for (Map.Entry<String, byte[]> constant : constants.entrySet()) {
+            String key = constant.getKey();
+            assertSame(constant.getValue(), pool.encode(key));
+            assertSame(constant.getValue(), pool.encode(new StringBuilder(key)));
+            assertSame(constant.getValue(), pool.encode(new OpaqueCharSequence(key)));
+            assertSame(constant.getValue(), pool.encode(CharBuffer.wrap(key)));
+        }
+        assertNull(pool.encode("key-100-ß"));
+        assertNull(pool.encode(new OpaqueCharSequence("missing")));
+    }
+
+    @Test
+    public void testPutReplacesAndGrows() {
+        ConstantPool pool = new ConstantPool(2);
+        for (int i = 0; i < 1000; ++i) {
+            pool.put(new StringBuilder("key-").append(i), new byte[] {(byte) i});
+        }
+        pool.put("key-0", new byte[] {42});
+        assertEquals(1000, pool.size());
+        assertArrayEquals(new byte[] {42}, pool.encode("key-0"));
+        assertArrayEquals(new byte[] {(byte) 999}, pool.encode("key-999"));
+    }
+
+    @Test
+    public void testPreEncodedConstantsIncludeHeader() {
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'x');
+        List<String> constants = Arrays.asList("foo", "Straßenschilder", "0123456789abcdef", new String(chars));
+        ConstantPool pool = EncodingCachingStrategies.preEncodedConstantPool(constants);
+        assertTrue(pool.includesHeader());
+        Packer packer = new Packer(buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(1, unpacker.readEnvelopeHeader());
+            for (String constant : constants) {
+                assertEquals(constant, unpacker.readString());
+            }
+            assertFalse(unpacker.hasRemaining());
+        }, ByteBuffer.allocate(1024));
+        packer.serialise(constants, (list, w) -> {
+            for (String constant : list) {
+                w.writeString(new StringBuilder(constant), pool);
+            }
+        });
+        packer.flush();
+    }
+}
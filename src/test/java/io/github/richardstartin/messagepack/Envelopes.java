@@ -0,0 +1,37 @@
+package io.github.richardstartin.messagepack;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Packs a single message into an envelope for tests which check its encoding.
+ */
+final class Envelopes {
+
+    private Envelopes() {
+    }
+
+    /**
+     * @return a copy of the envelope, which must be the only one flushed
+     */
+    static <T> ByteBuffer pack(T value, int bufferSize, Mapper<T> mapper) {
+        ByteBuffer[] packed = new ByteBuffer[1];
+        Packer packer = new Packer(buffer -> {
+            packed[0] = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+            packed[0].flip();
+        }, ByteBuffer.allocate(bufferSize));
+        packer.serialise(value, mapper);
+        packer.flush();
+        return packed[0];
+    }
+
+    /**
+     * @return an unpacker positioned at the message, after the envelope header
+     */
+    static <T> Unpacker unpack(T value, Mapper<T> mapper) {
+        Unpacker unpacker = new Unpacker(pack(value, 4096, mapper));
+        assertEquals(1, unpacker.readEnvelopeHeader());
+        return unpacker;
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FieldWriterTest {
+
+    @Packable
+    public static class Base {
+        final long id = 42L;
+        static int ignoredStatic = 1;
+    }
+
+    @Packable
+    public static class Metric extends Base {
+        private final String name;
+        private final double value;
+        private final int count;
+        private final boolean sampled;
+        private final short shard;
+        private final List<String> tags;
+        private final Object missing = null;
+        private transient int ignoredTransient = 2;
+
+        Metric(String name, double value, int count, boolean sampled, short shard, List<String> tags) {
+            this.name = name;
+            this.value = value;
+            this.count = count;
+            this.sampled = sampled;
+            this.shard = shard;
+            this.tags = tags;
+        }
+    }
+
+    public static class Hiding extends Base {
+        private final String id = "hidden";
+    }
+
+    public static class NotPackable {
+        @Override
+        public String toString() {
+            return "not packable";
+        }
+    }
+
+    @Test
+    public void testCodecWritesPackableFields() {
+        Metric metric = new Metric("latency", 1.5, 7, true, (short) 3, Arrays.asList("a", "b"));
+        Unpacker unpacker = Envelopes.unpack(metric, (m, w) -> w.writeObject(m));
+        verify(unpacker);
+    }
+
+    @Test
+    public void testMapper() {
+        Metric metric = new Metric("latency", 1.5, 7, true, (short) 3, Arrays.asList("a", "b"));
+        Mapper<Metric> mapper = FieldWriter.mapper(Metric.class);
+        assertSame(Codec.INSTANCE.get(Metric.class), mapper);
+        verify(Envelopes.unpack(metric, mapper));
+    }
+
+    @Test
+    public void testNotPackableUsesToString() {
+        Unpacker unpacker = Envelopes.unpack(new NotPackable(), (m, w) -> w.writeObject(m));
+        assertEquals("not packable", unpacker.readString());
+    }
+
+    @Test
+    public void testHiddenFieldsLeftOut() {
+        Unpacker unpacker = Envelopes.unpack(new Hiding(), FieldWriter.of(Hiding.class));
+        assertEquals(1, unpacker.readMapHeader());
+        assertEquals("id", unpacker.readString());
+        assertEquals("hidden", unpacker.readString());
+    }
+
+    private static void verify(Unpacker unpacker) {
+        assertEquals(8, unpacker.readMapHeader());
+        assertEquals("id", unpacker.readString());
+        assertEquals(42L, unpacker.readLong());
+        assertEquals("name", unpacker.readString());
+        assertEquals("latency", unpacker.readString());
+        assertEquals("value", unpacker.readString());
+        assertEquals(1.5, unpacker.readDouble(), 0);
+        assertEquals("count", unpacker.readString());
+        assertEquals(7, unpacker.readInt());
+        assertEquals("sampled", unpacker.readString());
+        assertTrue(unpacker.readBoolean());
+        assertEquals("shard", unpacker.readString());
+        assertEquals(3, unpacker.readInt());
+        assertEquals("tags", unpacker.readString());
+        assertEquals(2, unpacker.readArrayHeader());
+        assertEquals("a", unpacker.readString());
+        assertEquals("b", unpacker.readString());
+        assertEquals("missing", unpacker.readString());
+        unpacker.readNull();
+    }
+}
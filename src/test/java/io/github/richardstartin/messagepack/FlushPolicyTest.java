@@ -0,0 +1,89 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FlushPolicyTest {
+
+    @Test
+    public void testFlushOnMessageCount() {
+        List<Integer> envelopes = new ArrayList<>();
+        Packer packer = packer(envelopes);
+        packer.setFlushPolicy(FlushPolicy.onOverflow().maxMessages(10));
+        for (int i = 0; i < 95; ++i) {
+            packer.serialise(i, (x, w) -> w.writeInt(x));
+        }
+        assertEquals(9, envelopes.size());
+        for (int count : envelopes) {
+            assertEquals(10, count);
+        }
+        assertEquals(5, packer.messageCount());
+    }
+
+    @Test
+    public void testFlushOnBytes() {
+        List<Integer> envelopes = new ArrayList<>();
+        Packer packer = packer(envelopes);
+        packer.setFlushPolicy(FlushPolicy.onOverflow().maxBytes(90));
+        for (long i = 0; i < 100; ++i) {
+            // 9 bytes each
+            packer.serialise(Long.MAX_VALUE, (x, w) -> w.writeLong(x));
+        }
+        assertEquals(10, envelopes.size());
+        assertEquals(0, packer.size());
+    }
+
+    @Test
+    public void testFlushOnAge() throws InterruptedException {
+        List<Integer> envelopes = new ArrayList<>();
+        Packer packer = packer(envelopes);
+        packer.setFlushPolicy(FlushPolicy.onOverflow().maxAge(10, TimeUnit.MILLISECONDS));
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        assertFalse(packer.flushIfDue());
+        Thread.sleep(20);
+        assertTrue(packer.flushIfDue());
+        assertEquals(1, envelopes.size());
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        Thread.sleep(20);
+        packer.serialise(2, (x, w) -> w.writeInt(x));
+        assertEquals(2, envelopes.size());
+        assertEquals(2, envelopes.get(1).intValue());
+    }
+
+    @Test
+    public void testTimedPolicySetWithMessagesBuffered() {
+        List<Integer> envelopes = new ArrayList<>();
+        Packer packer = packer(envelopes);
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        packer.setFlushPolicy(FlushPolicy.onOverflow().maxAge(1, TimeUnit.HOURS));
+        packer.serialise(2, (x, w) -> w.writeInt(x));
+        assertFalse(packer.flushIfDue());
+        assertEquals(0, envelopes.size());
+        assertEquals(2, packer.messageCount());
+    }
+
+    @Test
+    public void testRequestFlushFromAnotherThread() throws InterruptedException {
+        List<Integer> envelopes = new ArrayList<>();
+        Packer packer = packer(envelopes);
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        Thread timer = new Thread(packer::requestFlush);
+        timer.start();
+        timer.join();
+        assertTrue(envelopes.isEmpty());
+        packer.serialise(2, (x, w) -> w.writeInt(x));
+        assertEquals(1, envelopes.size());
+        assertEquals(2, envelopes.get(0).intValue());
+        assertFalse(packer.flushIfDue());
+    }
+
+    private static Packer packer(List<Integer> envelopes) {
+        return new Packer(buffy -> envelopes.add(new Unpacker(buffy).readEnvelopeHeader()), ByteBuffer.allocate(1024));
+    }
+}
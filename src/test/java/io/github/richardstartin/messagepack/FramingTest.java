@@ -0,0 +1,113 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class FramingTest {
+
+    private final Framing framing;
+    private final int bufferSize;
+
+    public FramingTest(Framing framing, int bufferSize) {
+        this.framing = framing;
+        this.bufferSize = bufferSize;
+    }
+
+    @Parameterized.Parameters
+    public static Object[][] params() {
+        return new Object[][] {
+                {Framing.INT32, 64},
+                {Framing.INT32, 1024},
+                {Framing.VARINT, 64},
+                {Framing.VARINT, 1024},
+                {Framing.VARINT, 100_000},
+        };
+    }
+
+    @Test
+    public void testSplitStreamOfEnvelopes() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Packer packer = new Packer(buffy -> {
+            while (buffy.hasRemaining()) {
+                stream.write(buffy.get());
+            }
+        }, ByteBuffer.allocate(bufferSize));
+        packer.setFraming(framing);
+        for (long i = 0; i < 100_000; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        packer.flush();
+        byte[] bytes = stream.toByteArray();
+
+        FrameSplitter splitter = new FrameSplitter(framing, bufferSize);
+        Unpacker unpacker = new Unpacker();
+        List<Long> values = new ArrayList<>();
+        Random random = new Random(0);
+        int envelopes = 0;
+        for (int offset = 0; offset < bytes.length; ) {
+            int chunk = Math.min(bytes.length - offset, 1 + random.nextInt(bufferSize * 2));
+            envelopes += splitter.split(ByteBuffer.wrap(bytes, offset, chunk), envelope -> {
+                int count = unpacker.wrap(envelope).readEnvelopeHeader();
+                for (int i = 0; i < count; ++i) {
+                    values.add(unpacker.readLong());
+                }
+                assertFalse(envelope.hasRemaining());
+            });
+            offset += chunk;
+        }
+        assertEquals(envelopes, splitter.frames());
+        assertEquals(100_000, values.size());
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(i, values.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testPrefixIgnoresByteOrder() {
+        int length = bufferSize - framing.reserved();
+        ByteBuffer big = ByteBuffer.allocate(framing.reserved());
+        ByteBuffer little = ByteBuffer.allocate(framing.reserved()).order(ByteOrder.LITTLE_ENDIAN);
+        int start = framing.write(big, framing.reserved(), length);
+        assertEquals(start, framing.write(little, framing.reserved(), length));
+        assertArrayEquals(big.array(), little.array());
+        assertEquals((long) length << 8 | (framing.reserved() - start), framing.read(little, start, framing.reserved()));
+        if (framing == Framing.INT32) {
+            assertEquals(length, ByteBuffer.wrap(big.array()).getInt());
+        }
+    }
+
+    @Test
+    public void testSplitLittleEndianInput() {
+        ByteBuffer envelope = ByteBuffer.allocate(bufferSize);
+        Packer packer = new Packer(buffy -> envelope.put(buffy).flip(), ByteBuffer.allocate(bufferSize));
+        packer.setFraming(framing);
+        packer.serialise(42, (x, w) -> w.writeInt(x));
+        packer.flush();
+        FrameSplitter splitter = new FrameSplitter(framing, bufferSize);
+        int[] values = new int[1];
+        assertEquals(1, splitter.split(envelope.order(ByteOrder.LITTLE_ENDIAN), buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(1, unpacker.readEnvelopeHeader());
+            values[0] = unpacker.readInt();
+        }));
+        assertEquals(42, values[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSetFramingAfterPacking() {
+        Packer packer = new Packer(buffy -> {}, ByteBuffer.allocate(bufferSize));
+        packer.serialise(1, (x, w) -> w.writeInt(x));
+        packer.setFraming(framing);
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GeneratedWriterTest {
+
+    public static class Parent {
+        long id = 42L;
+    }
+
+    @Packable
+    public static class Event extends Parent {
+        String name = "checkout";
+        private final double value = 1.5;
+        boolean sampled = true;
+        char grade = 'A';
+        Map<String, String> tags = Collections.singletonMap("region", "eu-west-1");
+        static int ignoredStatic = 1;
+        transient int ignoredTransient = 2;
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    @Packable
+    public static class Hiding extends Parent {
+        String id = "hidden";
+        int count = 1;
+    }
+
+    @Packable
+    public static class Unreachable {
+        private final int secret = 1;
+    }
+
+    @Test
+    public void testGeneratedWriterRegistered() {
+        assertTrue(Codec.INSTANCE.get(Event.class) instanceof GeneratedWriter);
+        assertSame(Codec.INSTANCE.get(Event.class), FieldWriter.mapper(Event.class));
+        assertEquals(Event.class, ((GeneratedWriter<?>) Codec.INSTANCE.get(Event.class)).type());
+    }
+
+    @Test
+    public void testPrivateFieldWithoutAccessorFallsBackToFieldWriter() {
+        assertTrue(Codec.INSTANCE.get(Unreachable.class) instanceof FieldWriter);
+    }
+
+    @Test
+    public void testHiddenFieldsLeftOut() {
+        assertTrue(Codec.INSTANCE.get(Hiding.class) instanceof GeneratedWriter);
+        for (Mapper<Hiding> mapper : Arrays.asList(FieldWriter.mapper(Hiding.class), FieldWriter.of(Hiding.class))) {
+            Unpacker unpacker = Envelopes.unpack(new Hiding(), mapper);
+            assertEquals(2, unpacker.readMapHeader());
+            assertEquals("id", unpacker.readString());
+            assertEquals("hidden", unpacker.readString());
+            assertEquals("count", unpacker.readString());
+            assertEquals(1, unpacker.readInt());
+        }
+    }
+
+    @Test
+    public void testConfigTakesPrecedence() {
+        Writer<Event> writer = (value, packer, cache) -> packer.writeNull();
+        Codec codec = new Codec(Collections.singletonMap(Event.class, writer));
+        assertSame(writer, codec.get(Event.class));
+    }
+
+    @Test
+    public void testWriteObject() {
+        verify(Envelopes.unpack(new Event(), (e, w) -> w.writeObject(e)));
+    }
+
+    @Test
+    public void testMapper() {
+        verify(Envelopes.unpack(new Event(), FieldWriter.mapper(Event.class)));
+    }
+
+    private static void verify(Unpacker unpacker) {
+        assertEquals(6, unpacker.readMapHeader());
+        assertEquals("id", unpacker.readString());
+        assertEquals(42L, unpacker.readLong());
+        assertEquals("name", unpacker.readString());
+        assertEquals("checkout", unpacker.readString());
+        assertEquals("value", unpacker.readString());
+        assertEquals(1.5, unpacker.readDouble(), 0);
+        assertEquals("sampled", unpacker.readString());
+        assertTrue(unpacker.readBoolean());
+        assertEquals("grade", unpacker.readString());
+        assertEquals('A', unpacker.readInt());
+        assertEquals("tags", unpacker.readString());
+        assertEquals(1, unpacker.readMapHeader());
+        assertEquals("region", unpacker.readString());
+        assertEquals("eu-west-1", unpacker.readString());
+    }
+}
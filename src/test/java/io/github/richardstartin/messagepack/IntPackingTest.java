@@ -9,6 +9,9 @@ import org.msgpack.core.MessageUnpacker;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.Assert.assertEquals;
@@ -81,6 +84,53 @@ public class IntPackingTest {
 
 
 
+    @Test
+    public void bulkEncodingMatchesScalar() {
+        int[] asInts = new int[input.length];
+        for (int i = 0; i < input.length; ++i) {
+            asInts[i] = (int)input[i];
+        }
+        assertEquals(Envelopes.pack(input, input.length * 9 + 10, (x, w) -> {
+            ((Packer) w).writeArrayHeader(x.length);
+            for (long value : x) {
+                w.writeLong(value);
+            }
+        }), Envelopes.pack(input, input.length * 9 + 10, (x, w) -> w.writeLongs(x)));
+        assertEquals(Envelopes.pack(input, input.length * 5 + 10, (x, w) -> {
+            ((Packer) w).writeArrayHeader(asInts.length);
+            for (int value : asInts) {
+                w.writeInt(value);
+            }
+        }), Envelopes.pack(input, input.length * 5 + 10, (x, w) -> w.writeInts(asInts)));
+    }
+
+    @Test
+    public void packLongsAcrossFlushes() {
+        List<Long> values = new ArrayList<>();
+        Serialiser serialiser = new Packer(buffy -> {
+            try {
+                MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    int length = unpacker.unpackArrayHeader();
+                    for (int j = 0; j < length; ++j) {
+                        values.add(unpacker.unpackLong());
+                    }
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(Math.min(input.length, 100) * 9 + 10));
+        for (int i = 0; i < 10; ++i) {
+            serialiser.serialise(Arrays.copyOf(input, Math.min(input.length, 100)), (x, w) -> w.writeLongs(x));
+        }
+        serialiser.flush();
+        assertEquals(10 * Math.min(input.length, 100), values.size());
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(input[i % Math.min(input.length, 100)], values.get(i).longValue());
+        }
+    }
+
     private static long[] random(int size) {
         long[] random = new long[size];
         for (int i = 0; i < random.length; ++i) {
@@ -0,0 +1,72 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KeyDictionaryTest {
+
+    @Test
+    public void testRepeatedKeysAreCanonical() {
+        Map<String, Object> tags = new HashMap<>();
+        for (int i = 0; i < 20; ++i) {
+            tags.put("key-" + i, i);
+        }
+        tags.put("Straßenschilder", -1);
+        KeyDictionary dictionary = new KeyDictionary(64);
+        Map<String, String> canonical = new HashMap<>();
+        Unpacker unpacker = new Unpacker();
+        Packer packer = new Packer(buffy -> unpacker.deserialise(buffy, canonical, (target, u) -> {
+            int size = u.readMapHeader();
+            for (int i = 0; i < size; ++i) {
+                String key = u.readString(dictionary);
+                String previous = target.putIfAbsent(key, key);
+                if (null != previous) {
+                    assertSame(previous, key);
+                }
+                assertEquals(tags.get(key), u.readInt());
+            }
+        }), ByteBuffer.allocateDirect(4096));
+        for (int i = 0; i < 10; ++i) {
+            packer.serialise(tags, (m, w) -> w.writeMap(m));
+        }
+        packer.flush();
+        assertEquals(tags.keySet(), canonical.keySet());
+        assertEquals(tags.size(), dictionary.size());
+        assertEquals(tags.size(), dictionary.misses());
+        assertEquals(tags.size() * 9, dictionary.hits());
+        assertEquals(0.9, dictionary.hitRate(), 0.0001);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        KeyDictionary dictionary = new KeyDictionary(16);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        for (int i = 0; i < 1000; ++i) {
+            buffer.clear();
+            buffer.putInt(i);
+            assertNotNull(dictionary.decode(buffer, 0, 4));
+        }
+        assertEquals(16, dictionary.capacity());
+        assertTrue(dictionary.size() <= dictionary.capacity());
+        assertEquals(1000, dictionary.misses());
+        assertEquals(1000 - dictionary.size(), dictionary.evictions());
+    }
+
+    @Test
+    public void testLongKeysAreNotCached() {
+        KeyDictionary dictionary = new KeyDictionary(16, 4);
+        ByteBuffer buffer = ByteBuffer.wrap("abcdefgh".getBytes());
+        assertEquals("abcdefgh", dictionary.decode(buffer, 0, 8));
+        assertEquals("abcdefgh", dictionary.decode(buffer, 0, 8));
+        assertEquals("abcd", dictionary.decode(buffer, 0, 4));
+        assertEquals("abcd", dictionary.decode(buffer, 0, 4));
+        assertEquals(1, dictionary.size());
+        assertEquals(1, dictionary.hits());
+        assertEquals(3, dictionary.misses());
+    }
+}
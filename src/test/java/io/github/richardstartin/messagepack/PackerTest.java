@@ -8,7 +8,10 @@ import org.msgpack.core.MessageUnpacker;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -402,5 +405,326 @@ public class PackerTest {
         serialiser.flush();
     }
 
+    @Test
+    public void testWriteRaw() {
+        Map<String, Object> tags = new HashMap<>() {{
+            put("service", "foo");
+            put("env", "prod");
+            put("version", 3);
+        }};
+        PackedFragment fragment = PackedFragment.pack(tags, (m, w) -> w.writeMap(m));
+        PackedFragment entries = PackedFragment.pack(tags, (m, w) -> {
+            w.writeString("service");
+            w.writeString((String) m.get("service"));
+        });
+        AtomicInteger flushes = new AtomicInteger();
+        Serialiser serialiser = new Packer(buffy -> {
+            flushes.incrementAndGet();
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(tags.size(), unpacker.unpackMapHeader());
+                    for (int j = 0; j < tags.size(); ++j) {
+                        String key = unpacker.unpackString();
+                        if ("version".equals(key)) {
+                            assertEquals(tags.get(key), unpacker.unpackInt());
+                        } else {
+                            assertEquals(tags.get(key), unpacker.unpackString());
+                        }
+                    }
+                    assertEquals(2, unpacker.unpackMapHeader());
+                    assertEquals("service", unpacker.unpackString());
+                    assertEquals("foo", unpacker.unpackString());
+                    assertEquals("tags", unpacker.unpackString());
+                    assertEquals(tags.size(), unpacker.unpackMapHeader());
+                    unpacker.skipValue(tags.size() * 2);
+                }
+                assertFalse(unpacker.hasNext());
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(100));
+        for (int i = 0; i < 10; ++i) {
+            serialiser.serialise(fragment, (f, w) -> {
+                w.writeRaw(f);
+                Packer packer = (Packer) w;
+                packer.writeMapHeader(2);
+                w.writeRaw(entries);
+                w.writeString("tags");
+                w.writeObject(f);
+            });
+        }
+        serialiser.flush();
+        assertTrue(flushes.get() > 1);
+    }
+
+    @Test
+    public void testPackLargeFragment() {
+        int[] values = new int[1000];
+        Arrays.fill(values, Integer.MAX_VALUE);
+        PackedFragment fragment = PackedFragment.pack(values, (v, w) -> w.writeObject(v));
+        assertEquals(3 + 5 * values.length, fragment.size());
+    }
+
+    @Test
+    public void testGrowForOversizedMessage() {
+        final byte[] large = new byte[1000];
+        Arrays.fill(large, (byte) 1);
+        byte[][] messages = new byte[][] {{1, 2, 3}, large, {1, 2, 3}};
+        AtomicInteger flushes = new AtomicInteger();
+        AtomicInteger read = new AtomicInteger();
+        Serialiser serialiser = new Packer(Codec.INSTANCE, buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    byte[] expected = messages[read.getAndIncrement()];
+                    assertEquals(expected.length, unpacker.unpackBinaryHeader());
+                    assertArrayEquals(expected, unpacker.readPayload(expected.length));
+                }
+                assertFalse(unpacker.hasNext());
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+            flushes.incrementAndGet();
+        }, ByteBuffer.allocate(25), 4096);
+        Mapper<byte[]> mapper = (ba, writable) -> writable.writeBinary(ba, 0, ba.length);
+        for (byte[] message : messages) {
+            serialiser.serialise(message, mapper);
+        }
+        serialiser.flush();
+        assertEquals(messages.length, read.get());
+        assertEquals(2, flushes.get());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testOverflowMaxBufferSize() {
+        Serialiser serialiser = new Packer(Codec.INSTANCE, buffer -> {}, ByteBuffer.allocate(25), 512);
+        serialiser.serialise(new byte[1000], (ba, writable) -> writable.writeBinary(ba, 0, ba.length));
+    }
 
+    @Test
+    public void testMapperThrowing() {
+        List<Object> read = new ArrayList<>();
+        Serialiser serialiser = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    read.add(unpacker.unpackString());
+                }
+                assertFalse(unpacker.hasNext());
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(32));
+        Mapper<String> mapper = (s, w) -> w.writeString(s, EncodingCachingStrategies.none());
+        Mapper<String> failing = (s, w) -> {
+            w.writeString(s, EncodingCachingStrategies.none());
+            throw new IllegalStateException();
+        };
+        // throws after partially writing the message
+        try {
+            serialiser.serialise("partial", failing);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        serialiser.serialise("first", mapper);
+        serialiser.flush();
+        // throws after running out of space
+        try {
+            serialiser.serialise("this string doesn't fit in the buffer", failing);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        serialiser.serialise("second", mapper);
+        serialiser.flush();
+        assertEquals(Arrays.asList("first", "second"), read);
+    }
+
+    @Test
+    public void testBufferReusedInFullAfterFlush() {
+        AtomicInteger messages = new AtomicInteger();
+        Serialiser serialiser = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(messages.getAndIncrement(), unpacker.unpackInt());
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(25));
+        serialiser.serialise(0, (x, w) -> w.writeInt(x));
+        serialiser.flush();
+        for (int i = 1; i <= 15; ++i) {
+            serialiser.serialise(i, (x, w) -> w.writeInt(x));
+        }
+        serialiser.flush();
+        assertEquals(16, messages.get());
+    }
+
+    @Test
+    public void testMultiByteStringsAtEndOfBuffer() {
+        String[] strings = {"Straßenschilder", "道可道非常道名可名非常名", "👍👍", "\uD83D", "abc"};
+        String[] expected = {"Straßenschilder", "道可道非常道名可名非常名", "👍👍", "?", "abc"};
+        AtomicInteger messages = new AtomicInteger();
+        Serialiser serialiser = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(expected[messages.getAndIncrement() % expected.length], unpacker.unpackString());
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(64));
+        for (int i = 0; i < 100; ++i) {
+            serialiser.serialise(strings[i % strings.length], (x, w) -> w.writeString(x, s -> null));
+        }
+        serialiser.flush();
+        assertEquals(100, messages.get());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testOverflowOutsideSerialise() {
+        Packer packer = new Packer(buffer -> {}, ByteBuffer.allocate(8));
+        packer.writeLong(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testMixedTypeCollection() {
+        Object[] values = {"a", "b", 1L, 2L, null, "c", 3, 4.5};
+        AtomicInteger messages = new AtomicInteger();
+        Serialiser serialiser = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(values.length, unpacker.unpackArrayHeader());
+                    assertEquals("a", unpacker.unpackString());
+                    assertEquals("b", unpacker.unpackString());
+                    assertEquals(1L, unpacker.unpackLong());
+                    assertEquals(2L, unpacker.unpackLong());
+                    unpacker.unpackNil();
+                    assertEquals("c", unpacker.unpackString());
+                    assertEquals(3, unpacker.unpackInt());
+                    assertEquals(4.5, unpacker.unpackDouble(), 0);
+                    messages.incrementAndGet();
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(1024));
+        serialiser.serialise(Arrays.asList(values), (x, w) -> w.writeObject(x));
+        serialiser.serialise(values, (x, w) -> w.writeObject(x));
+        serialiser.flush();
+        assertEquals(2, messages.get());
+    }
+
+    @Test
+    public void testWriteCollectionWithElementType() {
+        AtomicInteger messages = new AtomicInteger();
+        Serialiser serialiser = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(4, unpacker.unpackArrayHeader());
+                    assertEquals("x", unpacker.unpackString());
+                    unpacker.unpackNil();
+                    assertEquals("y", unpacker.unpackString());
+                    assertEquals("z", unpacker.unpackString());
+                    messages.incrementAndGet();
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(1024));
+        serialiser.serialise(Arrays.asList("x", null, new StringBuilder("y"), "z"),
+                (x, w) -> w.writeCollection(x, CharSequence.class));
+        serialiser.flush();
+        assertEquals(1, messages.get());
+    }
+
+    @Test
+    public void testMessagesFillingBufferExactly() {
+        // 5 bytes are reserved for the envelope header, which leaves exactly 3 for the message
+        AtomicInteger messages = new AtomicInteger();
+        Packer packer = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(2, unpacker.unpackArrayHeader());
+                    assertEquals(1, unpacker.unpackInt());
+                    assertEquals(2, unpacker.unpackInt());
+                    messages.incrementAndGet();
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(8));
+        for (int i = 0; i < 10; ++i) {
+            packer.serialise(i, (x, w) -> {
+                ((Packer) w).writeArrayHeader(2);
+                w.writeInt(1);
+                w.writeInt(2);
+            });
+        }
+        packer.flush();
+        assertEquals(10, messages.get());
+    }
+
+    @Test
+    public void testStringsAndBinaryFillingBufferExactly() {
+        byte[] utf8 = "abc".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        List<String> strings = new ArrayList<>();
+        Packer packer = new Packer(buffy -> {
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffy);
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    strings.add(unpacker.unpackString());
+                    assertEquals(3, unpacker.unpackBinaryHeader());
+                    unpacker.readPayload(3);
+                }
+            } catch (IOException e) {
+                Assert.fail(e.getMessage());
+            }
+        }, ByteBuffer.allocate(5 + 4 + 5));
+        for (int i = 0; i < 10; ++i) {
+            packer.serialise(utf8, (x, w) -> {
+                w.writeUTF8(x, 0, x.length);
+                w.writeBinary(x, 0, x.length);
+            });
+        }
+        packer.flush();
+        assertEquals(10, strings.size());
+        for (String s : strings) {
+            assertEquals("abc", s);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteCollectionRejectsTypeWithoutWriter() {
+        Packer packer = new Packer(buffer -> {}, ByteBuffer.allocate(1024));
+        packer.serialise(Arrays.<Number>asList(1, 2L, 3.0), (x, w) -> w.writeCollection(x, Number.class));
+    }
+
+    @Test
+    public void testWriteCollectionOfFinalTypeWithoutWriter() throws IOException {
+        java.util.UUID uuid = new java.util.UUID(1, 2);
+        ByteBuffer[] packed = new ByteBuffer[1];
+        Packer packer = new Packer(buffer -> packed[0] = buffer, ByteBuffer.allocate(1024));
+        packer.serialise(Arrays.asList(uuid), (x, w) -> w.writeCollection(x, java.util.UUID.class));
+        packer.flush();
+        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(packed[0]);
+        assertEquals(1, unpacker.unpackArrayHeader());
+        assertEquals(1, unpacker.unpackArrayHeader());
+        assertEquals(uuid.toString(), unpacker.unpackString());
+    }
 }
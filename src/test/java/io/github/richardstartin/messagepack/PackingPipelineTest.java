@@ -0,0 +1,68 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class PackingPipelineTest {
+
+    @Test(timeout = 30_000)
+    public void testMergeEnvelopesFromManyThreads() throws Exception {
+        int threads = 8;
+        int messagesPerThread = 10_000;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int[] lastSeen = new int[threads];
+        int[] received = new int[1];
+        PackingPipeline pipeline = new PackingPipeline((buffers, length) -> {
+            output.reset();
+            for (int i = 0; i < length; ++i) {
+                ByteBuffer buffer = buffers[i];
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                output.write(bytes, 0, bytes.length);
+            }
+            MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(output.toByteArray());
+            try {
+                int count = unpacker.unpackArrayHeader();
+                for (int i = 0; i < count; ++i) {
+                    int producer = unpacker.unpackInt();
+                    int sequence = unpacker.unpackInt();
+                    assertEquals(lastSeen[producer] + 1, sequence);
+                    lastSeen[producer] = sequence;
+                }
+                assertFalse(unpacker.hasNext());
+                received[0] += count;
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        }, new BufferPool(threads * 2, 256));
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            int producer = t;
+            new Thread(() -> {
+                for (int i = 1; i <= messagesPerThread; ++i) {
+                    pipeline.serialise(i, (x, w) -> {
+                        w.writeInt(producer);
+                        w.writeInt(x);
+                    });
+                }
+                pipeline.flush();
+                done.countDown();
+            }).start();
+        }
+        while (done.getCount() > 0 || received[0] < threads * messagesPerThread) {
+            pipeline.drain();
+        }
+        assertEquals(threads * messagesPerThread, received[0]);
+        for (int last : lastSeen) {
+            assertEquals(messagesPerThread, last);
+        }
+    }
+}
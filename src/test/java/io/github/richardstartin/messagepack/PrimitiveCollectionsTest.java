@@ -0,0 +1,85 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveCollectionsTest {
+
+    @Test
+    public void testWriteLongs() {
+        long[] values = {0, -1, 127, 128, 1L << 40, Long.MIN_VALUE, Long.MAX_VALUE, 99};
+        Unpacker unpacker = Envelopes.unpack(LongList.wrap(values, 7), (list, w) -> w.writeLongs(list));
+        assertEquals(7, unpacker.readArrayHeader());
+        for (int i = 0; i < 7; ++i) {
+            assertEquals(values[i], unpacker.readLong());
+        }
+    }
+
+    @Test
+    public void testWriteDoubles() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i * 0.25 - 7;
+        }
+        Unpacker unpacker = Envelopes.unpack(DoubleList.wrap(values, values.length), (list, w) -> w.writeObject(list));
+        assertEquals(values.length, unpacker.readArrayHeader());
+        for (double value : values) {
+            assertEquals(value, unpacker.readDouble(), 0);
+        }
+    }
+
+    @Test
+    public void testWriteDoubleValuedMap() {
+        String[] keys = {"cpu", "memory", "disk"};
+        double[] values = {0.5, 1024, 3.75};
+        Unpacker unpacker = Envelopes.unpack(DoubleValuedMap.wrap(keys, values), (map, w) -> w.writeObject(map));
+        assertEquals(keys.length, unpacker.readMapHeader());
+        for (int i = 0; i < keys.length; ++i) {
+            assertEquals(keys[i], unpacker.readString());
+            assertEquals(values[i], unpacker.readDouble(), 0);
+        }
+    }
+
+    @Test
+    public void testDoublesSplitAcrossFlushes() {
+        DoubleList values = DoubleList.wrap(new double[] {1, 2, 3, 4, 5}, 5);
+        List<ByteBuffer> envelopes = new ArrayList<>();
+        Packer packer = new Packer(buffer -> envelopes.add(ByteBuffer.allocate(buffer.remaining()).put(buffer)),
+                ByteBuffer.allocate(64));
+        for (int i = 0; i < 10; ++i) {
+            packer.serialise(values, (list, w) -> w.writeDoubles(list));
+        }
+        packer.flush();
+        assertTrue(envelopes.size() > 1);
+        int messages = 0;
+        for (ByteBuffer envelope : envelopes) {
+            envelope.flip();
+            Unpacker unpacker = new Unpacker(envelope);
+            int count = unpacker.readEnvelopeHeader();
+            for (int i = 0; i < count; ++i, ++messages) {
+                assertEquals(5, unpacker.readArrayHeader());
+                for (int j = 1; j <= 5; ++j) {
+                    assertEquals(j, unpacker.readDouble(), 0);
+                }
+            }
+        }
+        assertEquals(10, messages);
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testDoublesTooLargeForBuffer() {
+        Packer packer = new Packer(buffer -> {}, ByteBuffer.allocate(64));
+        packer.serialise(DoubleList.wrap(new double[10], 10), (list, w) -> w.writeDoubles(list));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedKeysAndValues() {
+        DoubleValuedMap.wrap(new String[2], new double[3]);
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpoolReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadMessagesWithoutCopying() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        spool(directory, 0, 10_000);
+        List<Long> values = new ArrayList<>();
+        Unpacker unpacker = new Unpacker();
+        try (SpoolReader reader = new SpoolReader(directory)) {
+            assertEquals(10_000, reader.read(message -> {
+                assertTrue(message.isDirect());
+                values.add(unpacker.wrap(message).readLong());
+                assertFalse(message.hasRemaining());
+            }));
+            assertEquals(0, reader.corruptSegments());
+        }
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(i, values.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testResumeFromOffset() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        spool(directory, 0, 1000);
+        long sequence;
+        int offset;
+        try (SpoolReader reader = new SpoolReader(directory)) {
+            assertEquals(1000, reader.read(message -> {}));
+            sequence = reader.sequence();
+            offset = reader.offset();
+        }
+        spool(directory, 1000, 2000);
+        List<Long> values = new ArrayList<>();
+        try (SpoolReader reader = new SpoolReader(directory, sequence, offset)) {
+            assertEquals(1000, reader.read(values, (target, unpacker) -> target.add(unpacker.readLong())));
+        }
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(1000 + i, values.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testReadWhileWriting() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256);
+             SpoolReader reader = new SpoolReader(directory)) {
+            Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+            long next = 0;
+            for (int round = 0; round < 10; ++round) {
+                for (int i = 0; i < 100; ++i) {
+                    packer.serialise(next++, (x, w) -> w.writeLong(x));
+                }
+                packer.flush();
+                assertEquals(100, reader.read(message -> {}));
+            }
+        }
+    }
+
+    @Test
+    public void testSkipCorruptTail() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        spool(directory, 0, 10);
+        // an envelope which claims more messages than there are bytes
+        try (FileChannel channel = FileChannel.open(SpoolWriter.segment(directory, 0), StandardOpenOption.WRITE)) {
+            try (SpoolReader reader = new SpoolReader(directory)) {
+                reader.read(message -> {});
+                ByteBuffer corrupt = ByteBuffer.allocate(6);
+                corrupt.put((byte) 0xDD).putInt(1000).put((byte) 0xC1).flip();
+                channel.write(corrupt, reader.offset());
+            }
+        }
+        spool(directory, 10, 20);
+        List<Long> values = new ArrayList<>();
+        try (SpoolReader reader = new SpoolReader(directory)) {
+            assertEquals(20, reader.read(values, (target, unpacker) -> target.add(unpacker.readLong())));
+            assertEquals(1, reader.corruptSegments());
+        }
+        assertEquals(20, values.size());
+    }
+
+    private static void spool(Path directory, long from, long to) throws IOException {
+        try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256)) {
+            Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+            for (long i = from; i < to; ++i) {
+                packer.serialise(i, (x, w) -> w.writeLong(x));
+            }
+            packer.flush();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpoolWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRollSegments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256)) {
+            Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+            for (long i = 0; i < 10_000; ++i) {
+                packer.serialise(i, (x, w) -> w.writeLong(x));
+            }
+            packer.flush();
+        }
+        List<Long> values = readAll(directory);
+        assertTrue(segments(directory).size() > 1);
+        assertEquals(10_000, values.size());
+        for (int i = 0; i < values.size(); ++i) {
+            assertEquals(i, values.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testUnflushedMessagesAreNotVisible() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        SpoolWriter spool = new SpoolWriter(directory, 1024, 256);
+        Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+        for (long i = 0; i < 10; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        packer.flush();
+        for (long i = 10; i < 20; ++i) {
+            packer.serialise(i, (x, w) -> w.writeLong(x));
+        }
+        // crash without flushing
+        assertEquals(10, readAll(directory).size());
+        spool.close();
+    }
+
+    @Test
+    public void testOversizedMessagesAreCopied() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        byte[] large = new byte[600];
+        try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256)) {
+            Packer packer = new Packer(Codec.INSTANCE, spool, spool, 1024);
+            packer.serialise(1L, (x, w) -> w.writeLong(x));
+            packer.serialise(large, (x, w) -> w.writeBinary(x, 0, x.length));
+            packer.serialise(2L, (x, w) -> w.writeLong(x));
+            packer.flush();
+        }
+        Unpacker unpacker = new Unpacker();
+        int messages = 0;
+        for (Path segment : segments(directory)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            unpacker.wrap(buffer);
+            while (buffer.hasRemaining() && buffer.get(buffer.position()) == (byte) 0xDD) {
+                int count = unpacker.readEnvelopeHeader();
+                for (int i = 0; i < count; ++i) {
+                    unpacker.skip();
+                    ++messages;
+                }
+            }
+        }
+        assertEquals(3, messages);
+    }
+
+    @Test
+    public void testReopenStartsNewSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        for (int run = 0; run < 2; ++run) {
+            try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256)) {
+                assertEquals(run, spool.sequence());
+                Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+                packer.serialise((long) run, (x, w) -> w.writeLong(x));
+                packer.flush();
+            }
+        }
+        assertEquals(2, segments(directory).size());
+        assertEquals(2, readAll(directory).size());
+    }
+
+    @Test
+    public void testIgnoresFilesNotNamedBySequence() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Files.createFile(directory.resolve("backup" + SpoolWriter.SUFFIX));
+        Files.createFile(directory.resolve(SpoolWriter.SUFFIX));
+        Files.createFile(directory.resolve("-1" + SpoolWriter.SUFFIX));
+        Files.createFile(directory.resolve("99999999999999999999999" + SpoolWriter.SUFFIX));
+        try (SpoolWriter spool = new SpoolWriter(directory, 1024, 256)) {
+            assertEquals(0, spool.sequence());
+            Packer packer = new Packer(Codec.INSTANCE, spool, spool);
+            packer.serialise(42L, (x, w) -> w.writeLong(x));
+            packer.flush();
+        }
+        List<Long> values = new ArrayList<>();
+        Unpacker unpacker = new Unpacker();
+        try (SpoolReader reader = new SpoolReader(directory)) {
+            reader.read(message -> values.add(unpacker.wrap(message).readLong()));
+        }
+        assertEquals(Collections.singletonList(42L), values);
+    }
+
+    private static List<Long> readAll(Path directory) throws IOException {
+        List<Long> values = new ArrayList<>();
+        Unpacker unpacker = new Unpacker();
+        for (Path segment : segments(directory)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+            unpacker.wrap(buffer);
+            while (buffer.hasRemaining() && buffer.get(buffer.position()) == (byte) 0xDD) {
+                int count = unpacker.readEnvelopeHeader();
+                for (int i = 0; i < count; ++i) {
+                    values.add(unpacker.readLong());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.msgpack")) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
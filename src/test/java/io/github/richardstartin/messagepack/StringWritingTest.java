@@ -27,6 +27,8 @@ public class StringWritingTest {
     private static final EncodingCache CACHE =
             EncodingCachingStrategies.memoise(s -> ((String)s).getBytes(StandardCharsets.UTF_8));
 
+    private static final EncodingCache PRE_ENCODED_CACHE = EncodingCachingStrategies.concurrentPreEncoded(64);
+
     private final List<Map<String, String>> maps;
     private final ByteBuffer buffer = ByteBuffer.allocate(10 << 10);
 
@@ -111,6 +113,15 @@ public class StringWritingTest {
         packer.flush();
     }
 
+    @Test
+    public void testSerialiseTextMapWithPreEncodedCache() {
+        Packer packer = new Packer(this::testBufferContents, buffer);
+        for (Map<String, String> map : maps) {
+            packer.serialise(map, (m, p) -> p.writeMap(m, PRE_ENCODED_CACHE));
+        }
+        packer.flush();
+    }
+
     @Test
     public void testSerialiseTextMapWithoutCache() {
         Packer packer = new Packer(this::testBufferContents, buffer);
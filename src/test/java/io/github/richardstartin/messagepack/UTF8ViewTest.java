@@ -0,0 +1,86 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class UTF8ViewTest {
+
+    private final String string;
+
+    public UTF8ViewTest(String string) {
+        this.string = string;
+    }
+
+    @Parameterized.Parameters
+    public static Object[][] strings() {
+        return new Object[][] {
+                {""},
+                {"foo"},
+                {"123456789012390-2394-3"},
+                {"Straßenschilder"},
+                {"道可道非常道名可名非常名"},
+                {"👍👍"},
+        };
+    }
+
+    @Test
+    public void testContentEqualityWithString() {
+        for (ByteBuffer buffer : buffers()) {
+            UTF8View view = new UTF8View().reset(buffer, 3, string.getBytes(StandardCharsets.UTF_8).length);
+            assertEquals(string.length(), view.length());
+            assertEquals(string.hashCode(), view.hashCode());
+            assertTrue(view.equals(string));
+            assertTrue(view.equals(new StringBuilder(string)));
+            assertFalse(view.equals(string + "x"));
+            assertEquals(string, view.toString());
+            for (int i = 0; i < string.length(); ++i) {
+                assertEquals(string.charAt(i), view.charAt(i));
+            }
+        }
+    }
+
+    @Test
+    public void testViewsEqualEachOther() {
+        ByteBuffer[] buffers = buffers();
+        int length = string.getBytes(StandardCharsets.UTF_8).length;
+        UTF8View heap = new UTF8View().reset(buffers[0], 3, length);
+        UTF8View direct = new UTF8View().reset(buffers[1], 3, length);
+        assertEquals(heap, direct);
+        assertEquals(heap.hashCode(), direct.hashCode());
+    }
+
+    @Test
+    public void testLookupInConstantPool() {
+        Map<CharSequence, byte[]> constants = new HashMap<>();
+        constants.put(string, string.getBytes(StandardCharsets.UTF_8));
+        EncodingCache cache = EncodingCachingStrategies.constantPool(constants);
+        Packer packer = new Packer(buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(1, unpacker.readEnvelopeHeader());
+            UTF8View view = unpacker.readStringView();
+            assertSame(constants.get(string), cache.encode(view));
+        }, ByteBuffer.allocateDirect(256));
+        packer.serialise(string, (s, w) -> w.writeString(s));
+        packer.flush();
+    }
+
+    private ByteBuffer[] buffers() {
+        byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer heap = ByteBuffer.allocate(utf8.length + 6);
+        ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length + 6);
+        heap.position(3);
+        heap.put(utf8);
+        direct.position(3);
+        direct.put(utf8);
+        return new ByteBuffer[] {heap, direct};
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.richardstartin.messagepack;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UnpackerTest {
+
+    @Test
+    public void testReadLongs() {
+        long[] data = new long[] { -1, Long.MIN_VALUE, Long.MAX_VALUE, 0, 1, 0x80, 0xF, 0xFF, 0xFFF, 0xFFFF,
+                0xFFFFFFFFL, 0xFFFFFFFFFL, -0xF, -0xFF, -0xFFFF, -0xFFFFFFFFL, ThreadLocalRandom.current().nextLong() };
+        Packer packer = new Packer(buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(1, unpacker.readEnvelopeHeader());
+            assertEquals(data.length, unpacker.readArrayHeader());
+            for (long datum : data) {
+                assertEquals(datum, unpacker.readLong());
+            }
+            assertFalse(unpacker.hasRemaining());
+        }, ByteBuffer.allocate(200));
+        packer.serialise(data, (x, w) -> w.writeObject(x));
+        packer.flush();
+    }
+
+    @Test
+    public void testReadInts() {
+        int[] data = new int[] { -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 1, 0x80, 0xF, 0xFF, 0xFFF, 0xFFFF,
+                -0xF, -0xFF, -0xFFFF, ThreadLocalRandom.current().nextInt() };
+        Packer packer = new Packer(buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(1, unpacker.readEnvelopeHeader());
+            assertEquals(data.length, unpacker.readArrayHeader());
+            for (int datum : data) {
+                assertEquals(datum, unpacker.readInt());
+            }
+        }, ByteBuffer.allocateDirect(200));
+        packer.serialise(data, (x, w) -> w.writeObject(x));
+        packer.flush();
+    }
+
+    @Test
+    public void testReadMessages() {
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("foo", 9f);
+        tags.put("bar", 9d);
+        tags.put("qux", "Straßenschilder");
+        tags.put("list", Collections.singletonList("element"));
+        tags.put("binary", new byte[] {1, 2, 3});
+        Packer packer = new Packer(buffy -> {
+            Unpacker unpacker = new Unpacker(buffy);
+            assertEquals(20, unpacker.readEnvelopeHeader());
+            for (int i = 0; i < 20; ++i) {
+                assertEquals("id", unpacker.readString());
+                assertEquals(i, unpacker.readInt());
+                assertEquals(ValueType.NULL, unpacker.peekType());
+                assertTrue(unpacker.tryReadNull());
+                assertEquals(i % 2 == 0, unpacker.readBoolean());
+                assertEquals(tags.size(), unpacker.readMapHeader());
+                for (int j = 0; j < tags.size(); ++j) {
+                    String key = unpacker.readString();
+                    Object expected = tags.get(key);
+                    switch (key) {
+                        case "foo":
+                            assertEquals(ValueType.FLOAT, unpacker.peekType());
+                            assertEquals((Float) expected, unpacker.readFloat(), 0.0001);
+                            break;
+                        case "bar":
+                            assertEquals((Double) expected, unpacker.readDouble(), 0.0001);
+                            break;
+                        case "qux":
+                            assertEquals(expected, unpacker.readString());
+                            break;
+                        case "binary":
+                            ByteBuffer target = ByteBuffer.allocate(3);
+                            assertEquals(3, unpacker.readBinary(target));
+                            assertArrayEquals((byte[]) expected, target.array());
+                            break;
+                        default:
+                            assertEquals(ValueType.ARRAY, unpacker.peekType());
+                            unpacker.skip();
+                    }
+                }
+            }
+            assertFalse(unpacker.hasRemaining());
+        }, ByteBuffer.allocateDirect(4096));
+        for (int i = 0; i < 20; ++i) {
+            packer.serialise(i, (x, w) -> {
+                w.writeString("id");
+                w.writeInt(x);
+                w.writeNull();
+                w.writeBoolean(x % 2 == 0);
+                w.writeMap(tags);
+            });
+        }
+        packer.flush();
+    }
+
+    @Test
+    public void testDeserialise() {
+        long[] ids = new long[100];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = ThreadLocalRandom.current().nextLong();
+        }
+        long[] decoded = new long[ids.length];
+        int[] position = new int[1];
+        Unpacker unpacker = new Unpacker();
+        AtomicInteger messages = new AtomicInteger();
+        Packer packer = new Packer(buffy -> messages.addAndGet(unpacker.deserialise(buffy, decoded, (target, u) -> {
+            assertEquals("id", u.readString());
+            target[position[0]++] = u.readLong();
+        })), ByteBuffer.allocate(256));
+        for (long id : ids) {
+            packer.serialise(id, (x, w) -> {
+                w.writeString("id");
+                w.writeLong(x);
+            });
+        }
+        packer.flush();
+        assertEquals(ids.length, messages.get());
+        assertArrayEquals(ids, decoded);
+    }
+
+    @Test
+    public void testSkipNestedValues() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packMapHeader(2);
+        packer.packString("nested");
+        packer.packArrayHeader(3);
+        packer.packMapHeader(1);
+        packer.packString("x");
+        packer.packExtensionTypeHeader((byte) 1, 4);
+        packer.writePayload(new byte[4]);
+        packer.packLong(Long.MAX_VALUE);
+        packer.packBinaryHeader(300);
+        packer.writePayload(new byte[300]);
+        packer.packString("empty");
+        packer.packArrayHeader(0);
+        packer.packLong(42);
+        Unpacker unpacker = new Unpacker(ByteBuffer.wrap(packer.toByteArray()));
+        unpacker.skip();
+        assertEquals(42, unpacker.readLong());
+        assertFalse(unpacker.hasRemaining());
+    }
+
+    @Test
+    public void testReadLargeHeaders() throws IOException {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        packer.packArrayHeader(0x10000);
+        packer.packMapHeader(0x100);
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        packer.packString(new String(chars));
+        Unpacker unpacker = new Unpacker(ByteBuffer.wrap(packer.toByteArray()));
+        assertEquals(0x10000, unpacker.readArrayHeader());
+        assertEquals(0x100, unpacker.readMapHeader());
+        assertEquals(new String(chars), unpacker.readString());
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        Unpacker unpacker = new Unpacker(ByteBuffer.wrap(new byte[] {(byte) 0xC0}));
+        try {
+            unpacker.readInt();
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("0xc0"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIntOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        buffer.put((byte) 0xD3).putLong(Long.MAX_VALUE).flip();
+        new Unpacker(buffer).readInt();
+    }
+}